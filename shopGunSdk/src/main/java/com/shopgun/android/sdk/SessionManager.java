@@ -31,11 +31,14 @@ import com.shopgun.android.sdk.network.Response.Listener;
 import com.shopgun.android.sdk.network.ShopGunError;
 import com.shopgun.android.sdk.network.impl.JsonObjectRequest;
 import com.shopgun.android.sdk.utils.Api.Endpoint;
+import com.shopgun.android.sdk.utils.HashUtils;
+import com.shopgun.android.sdk.utils.HeaderUtils;
 import com.shopgun.android.sdk.utils.SgnJson;
 import com.shopgun.android.sdk.utils.Utils;
 
 import org.json.JSONObject;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -68,6 +71,8 @@ public class SessionManager {
     private LinkedList<Request<?>> mSessionQueue = new LinkedList<Request<?>>();
 
     private Request<?> mReqInFlight;
+    /** The signed headers for the current session token, replaced whenever the token changes */
+    private volatile SignedHeaders mSignedHeaders;
 
     public SessionManager(ShopGun shopGun) {
 
@@ -78,6 +83,7 @@ public class SessionManager {
             mSession = new Session();
         }
         ExternalClientIdStore.updateCid(mSession, mShopGun);
+        refreshSignedHeaders();
     }
 
     /**
@@ -241,6 +247,7 @@ public class SessionManager {
             mSession = s;
             ExternalClientIdStore.updateCid(mSession, mShopGun);
             mShopGun.getSettings().setSessionJson(session);
+            refreshSignedHeaders();
 
             // Reset session retry boolean
             mTryToRecover = true;
@@ -522,11 +529,37 @@ public class SessionManager {
                 Date exp = Utils.stringToDate(headerExpires);
                 mSession.setExpires(exp);
                 mShopGun.getSettings().setSessionJson(mSession.toJSON());
+                refreshSignedHeaders();
             }
         }
 
     }
 
+    /**
+     * Get the signed headers (token and signature) for the current session. The headers are computed
+     * once per token, and can be read from any thread without locking.
+     * @return The signed headers for the current session token
+     */
+    public SignedHeaders getSignedHeaders() {
+        SignedHeaders headers = mSignedHeaders;
+        String token = mSession.getToken();
+        if (headers == null || !headers.isForToken(token)) {
+            // The session was modified directly, rather than through the SessionManager
+            headers = refreshSignedHeaders();
+        }
+        return headers;
+    }
+
+    /**
+     * Rebuild the signed headers, e.g. when the token or the API secret have changed.
+     * @return The new signed headers
+     */
+    SignedHeaders refreshSignedHeaders() {
+        SignedHeaders headers = new SignedHeaders(mSession.getToken(), mShopGun.getApiSecret());
+        mSignedHeaders = headers;
+        return headers;
+    }
+
     /**
      * Destroys this session.<br>
      * A new session will be generated, on first request to server.
@@ -537,6 +570,7 @@ public class SessionManager {
             mSession = new Session();
             ExternalClientIdStore.updateCid(mSession, mShopGun);
             mShopGun.getSettings().setSessionJson(mSession.toJSON());
+            refreshSignedHeaders();
             mShopGun.getSettings().setSessionFacebook(null);
             clearUser();
             SgnBus.getInstance().post(new SessionEvent(oldUserId, mSession.getUser().getUserId()));
@@ -551,4 +585,42 @@ public class SessionManager {
         mShopGun.getSettings().setSessionFacebook(null);
     }
 
+    /**
+     * An immutable snapshot of the headers that authenticate requests for a session token.
+     */
+    public static final class SignedHeaders {
+
+        private final String mToken;
+        private final Map<String, String> mHeaders;
+
+        SignedHeaders(String token, String apiSecret) {
+            mToken = token;
+            Map<String, String> headers = new HashMap<String, String>(2);
+            headers.put(HeaderUtils.X_TOKEN, token);
+            headers.put(HeaderUtils.X_SIGNATURE, HashUtils.sha256(apiSecret + token));
+            mHeaders = Collections.unmodifiableMap(headers);
+        }
+
+        boolean isForToken(String token) {
+            return mToken == null ? token == null : mToken.equals(token);
+        }
+
+        /**
+         * Get the token the headers were signed for
+         * @return A token
+         */
+        public String getToken() {
+            return mToken;
+        }
+
+        /**
+         * Get the headers, the map is unmodifiable
+         * @return A map of headers
+         */
+        public Map<String, String> getHeaders() {
+            return mHeaders;
+        }
+
+    }
+
 }
@@ -35,10 +35,12 @@ import com.shopgun.android.sdk.model.Shoppinglist;
 import com.shopgun.android.sdk.model.ShoppinglistItem;
 import com.shopgun.android.sdk.model.User;
 import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.Delivery;
 import com.shopgun.android.sdk.network.Network;
 import com.shopgun.android.sdk.network.Request;
 import com.shopgun.android.sdk.network.RequestQueue;
 import com.shopgun.android.sdk.network.impl.DefaultRedirectProtocol;
+import com.shopgun.android.sdk.network.impl.HandlerDelivery;
 import com.shopgun.android.sdk.network.impl.HttpURLNetwork;
 import com.shopgun.android.sdk.network.impl.MemoryCache;
 import com.shopgun.android.sdk.network.impl.NetworkImpl;
@@ -134,7 +136,7 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
      * Default constructor, this is private to allow us to create a singleton instance
      * @param context A context
      */
-    private ShopGun(Context context, ExecutorService executorService, Cache cache, Network network, Environment environment, ThemeEnvironment themeEnvironment, boolean develop) {
+    private ShopGun(Context context, ExecutorService executorService, Cache cache, Network network, Delivery delivery, Environment environment, ThemeEnvironment themeEnvironment, boolean develop) {
         // Get application context, to avoid memory leaks (e.g. holding a reference to an Activity)
         mContext = context;
         mActivityCounter = new ActivityCounter(this, 1000, mHandler);
@@ -148,7 +150,7 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
         mExecutor = executorService;
         mSettings = new Settings(mContext);
 
-        mRequestQueue = new RequestQueue(ShopGun.this, cache, network);
+        mRequestQueue = new RequestQueue(ShopGun.this, cache, network, delivery);
         mRequestQueue.start();
 
         mLocation = mSettings.getLocation();
@@ -441,6 +443,9 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
             mApiKey = null;
             mApiSecret = null;
             ensureKeys(mContext);
+            if (mSessionManager != null) {
+                mSessionManager.refreshSignedHeaders();
+            }
         }
     }
 
@@ -561,6 +566,7 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
         ExecutorService mExecutor;
         Cache mCache;
         Network mNetwork;
+        Delivery mDelivery;
         SgnLogger mLog;
         Boolean mDevelop;
         Environment mEnvironment;
@@ -579,6 +585,8 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
 
         /**
          * Specify the memory cache for the shopgun-requests.
+         * <p>To persist responses across app restarts, use a
+         * {@link com.shopgun.android.sdk.network.impl.TwoTierCache}.</p>
          * @param cache A {@link Cache}
          * @return This object
          */
@@ -595,6 +603,8 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
 
         /**
          * Specify the {@link Network} to use for requests performed.
+         * <p>Defaults to {@link NetworkImpl} on {@link HttpURLNetwork}. Use
+         * {@link com.shopgun.android.sdk.network.impl.OkHttpNetwork} for connection pooling and HTTP/2.</p>
          * @param network A network
          * @return This object
          */
@@ -609,6 +619,24 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
             return this;
         }
 
+        /**
+         * Specify the {@link Delivery} for delivering responses to the UI thread.
+         * <p>Defaults to {@link HandlerDelivery}. Use {@link com.shopgun.android.sdk.network.impl.FrameBatchDelivery} to deliver
+         * the responses arriving within a frame, in a single pass.</p>
+         * @param delivery A delivery
+         * @return This object
+         */
+        public Builder setDelivery(Delivery delivery) {
+            if (delivery == null) {
+                throw new IllegalArgumentException("Delivery must not be null.");
+            }
+            if (mDelivery != null) {
+                throw new IllegalStateException("Delivery already set.");
+            }
+            mDelivery = delivery;
+            return this;
+        }
+
         /**
          * Specify the {@link ExecutorService} for background tasks
          * @param executorService A ExecutorService
@@ -719,6 +747,10 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
                 mNetwork = new NetworkImpl(new HttpURLNetwork(new DefaultRedirectProtocol()));
             }
 
+            if (mDelivery == null) {
+                mDelivery = new HandlerDelivery();
+            }
+
             if (mLog == null) {
                 mLog = new DefaultLogger();
             }
@@ -736,7 +768,7 @@ public class ShopGun implements ActivityCounter.OnLifecycleEvent {
             }
 
             SgnLog.setLogger(mLog);
-            ShopGun.mShopGun = new ShopGun(mContext, mExecutor, mCache, mNetwork, mEnvironment, mThemeEnvironment, mDevelop);
+            ShopGun.mShopGun = new ShopGun(mContext, mExecutor, mCache, mNetwork, mDelivery, mEnvironment, mThemeEnvironment, mDevelop);
             return ShopGun.getInstance(mContext);
         }
 
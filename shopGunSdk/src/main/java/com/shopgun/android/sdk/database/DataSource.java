@@ -16,9 +16,9 @@
 
 package com.shopgun.android.sdk.database;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 
@@ -28,6 +28,7 @@ import com.shopgun.android.sdk.model.Shoppinglist;
 import com.shopgun.android.sdk.model.ShoppinglistItem;
 import com.shopgun.android.sdk.model.User;
 import com.shopgun.android.sdk.model.interfaces.SyncState;
+import com.shopgun.android.sdk.utils.Utils;
 
 import org.json.JSONArray;
 
@@ -71,13 +72,24 @@ public class DataSource extends SQLDataSource {
     }
 
     protected int delete(String table, String whereClause, String[] whereArgs) {
+        acquireWriteDb();
         try {
-            return acquireDb().delete(table, whereClause, whereArgs);
+            SQLiteStatement s = getStatement("DELETE FROM " + table + " WHERE " + whereClause);
+            bindStrings(s, whereArgs);
+            return executeUpdateDelete(s);
         } catch (IllegalStateException e) {
             log(TAG, e);
             return 0;
         } finally {
-            releaseDb();
+            releaseWriteDb();
+        }
+    }
+
+    private static void bindStrings(SQLiteStatement s, String[] args) {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                DbUtils.bindOrNull(s, i + 1, args[i]);
+            }
         }
     }
 
@@ -109,11 +121,11 @@ public class DataSource extends SQLDataSource {
         if (list.isEmpty()) {
             return 0;
         }
-        SQLiteDatabase db = acquireDb();
+        SQLiteDatabase db = acquireWriteDb();
         try {
             int count = 0;
             db.beginTransaction();
-            SQLiteStatement s = ListSQLiteHelper.getInsertStatement(db);
+            SQLiteStatement s = getStatement(ListSQLiteHelper.INSERT_STATEMENT);
             for (Shoppinglist sl : list) {
                 ListSQLiteHelper.bind(s, sl, userId);
                 if (s.executeInsert() > -1) {
@@ -129,7 +141,7 @@ public class DataSource extends SQLDataSource {
             return -1;
         } finally {
             db.endTransaction();
-            releaseDb();
+            releaseWriteDb();
         }
     }
 
@@ -163,24 +175,21 @@ public class DataSource extends SQLDataSource {
     }
 
     private List<Shoppinglist> getLists(String selection, String[] selectionArgs, String userId) {
+        // Reads don't use a transaction, that would make them wait for the writer's connection
         Cursor c = null;
-        SQLiteDatabase db = acquireDb();
         try {
-            db.beginTransaction();
-            c = db.query(false, ListSQLiteHelper.TABLE, null, selection, selectionArgs, null, null, DatabaseHelper.NAME, null);
+            c = acquireDb().query(false, ListSQLiteHelper.TABLE, null, selection, selectionArgs, null, null, DatabaseHelper.NAME, null);
             List<Shoppinglist> lists = ListSQLiteHelper.cursorToList(c);
             for (Shoppinglist sl : lists) {
                 List<Share> shares = getShares(sl.getId(), userId, false);
                 sl.setShares(shares);
             }
-            db.setTransactionSuccessful();
             return lists;
         } catch (IllegalStateException e) {
             log(TAG, e);
             return new ArrayList<Shoppinglist>();
         } finally {
             DbUtils.closeCursor(c);
-            db.endTransaction();
             releaseDb();
         }
     }
@@ -227,16 +236,19 @@ public class DataSource extends SQLDataSource {
      * @return the number of rows affected
      */
     public int editItemState(String shoppinglistId, String userId, Date modified, int syncState) {
+        acquireWriteDb();
         try {
-            ContentValues cv = ItemSQLiteHelper.stateToContentValues(modified, syncState);
-            String whereClause = DatabaseHelper.SHOPPINGLIST_ID + "=? AND " + DatabaseHelper.USER + "=? ";
-            String[] whereArgs = new String[]{shoppinglistId, userId};
-            return acquireDb().updateWithOnConflict(ItemSQLiteHelper.TABLE, cv, whereClause, whereArgs, SQLiteDatabase.CONFLICT_REPLACE);
+            SQLiteStatement s = getStatement(ItemSQLiteHelper.UPDATE_STATE_STATEMENT);
+            DbUtils.bindOrNull(s, 1, Utils.dateToString(modified));
+            s.bindLong(2, syncState);
+            DbUtils.bindOrNull(s, 3, shoppinglistId);
+            DbUtils.bindOrNull(s, 4, userId);
+            return executeUpdateDelete(s);
         } catch (IllegalStateException e) {
             log(TAG, e);
             return 0;
         } finally {
-            releaseDb();
+            releaseWriteDb();
         }
     }
 
@@ -245,17 +257,23 @@ public class DataSource extends SQLDataSource {
      *
      * @param sli A {@link ShoppinglistItem} to add to the database
      * @param userId A {@link User#getId()}
-     * @return number of affected rows
+     * @return the row ID of the newly inserted row, -1 if the insert failed, or 0 if the database is closed
      */
     public long insertItem(ShoppinglistItem sli, String userId) {
+        acquireWriteDb();
         try {
-            ContentValues cv = ItemSQLiteHelper.objectToContentValues(sli, userId);
-            return acquireDb().insertWithOnConflict(ItemSQLiteHelper.TABLE, null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+            SQLiteStatement s = getStatement(ItemSQLiteHelper.INSERT_STATEMENT);
+            ItemSQLiteHelper.bind(s, sli, userId);
+            return s.executeInsert();
+        } catch (SQLException e) {
+            // Same result as SQLiteDatabase.insertWithOnConflict() on failure
+            log(TAG, e);
+            return -1;
         } catch (IllegalStateException e) {
             log(TAG, e);
             return 0;
         } finally {
-            releaseDb();
+            releaseWriteDb();
         }
     }
 
@@ -269,11 +287,11 @@ public class DataSource extends SQLDataSource {
         if (list.isEmpty()) {
             return -1;
         }
-        SQLiteDatabase db = acquireDb();
+        SQLiteDatabase db = acquireWriteDb();
         db.beginTransaction();
         int count = 0;
         try {
-            SQLiteStatement s = ItemSQLiteHelper.getInsertStatement(db);
+            SQLiteStatement s = getStatement(ItemSQLiteHelper.INSERT_STATEMENT);
             for (ShoppinglistItem sli : list) {
                 ItemSQLiteHelper.bind(s, sli, userId);
                 if (s.executeInsert() > -1) {
@@ -287,7 +305,7 @@ public class DataSource extends SQLDataSource {
             return count;
         } finally {
             db.endTransaction();
-            releaseDb();
+            releaseWriteDb();
         }
     }
 
@@ -388,14 +406,19 @@ public class DataSource extends SQLDataSource {
      * @return the row ID of the newly inserted row OR -1 if any error
      */
     public long insertShare(Share s, String userId) {
+        acquireWriteDb();
         try {
-            ContentValues cv = ShareSQLiteHelper.objectToContentValues(s, userId);
-            return acquireDb().insertWithOnConflict(ShareSQLiteHelper.TABLE, null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+            SQLiteStatement statement = getStatement(ShareSQLiteHelper.INSERT_STATEMENT);
+            ShareSQLiteHelper.bind(statement, s, userId);
+            return statement.executeInsert();
+        } catch (SQLException e) {
+            log(TAG, e);
+            return -1;
         } catch (IllegalStateException e) {
             log(TAG, e);
             return -1;
         } finally {
-            releaseDb();
+            releaseWriteDb();
         }
     }
 
@@ -407,7 +430,7 @@ public class DataSource extends SQLDataSource {
      * @return the row ID of the newly inserted row OR -1 if any error
      */
     public int insertShares(Shoppinglist sl, String userId) {
-        SQLiteDatabase db = acquireDb();
+        SQLiteDatabase db = acquireWriteDb();
         db.beginTransaction();
         try {
             int count = insertSharesTransactionLess(db, sl.getShares().values(), userId);
@@ -418,7 +441,7 @@ public class DataSource extends SQLDataSource {
             return -1;
         } finally {
             db.endTransaction();
-            releaseDb();
+            releaseWriteDb();
         }
     }
 
@@ -426,7 +449,7 @@ public class DataSource extends SQLDataSource {
         db.acquireReference();
         try {
             int count = 0;
-            SQLiteStatement s = ShareSQLiteHelper.getInsertStatement(db);
+            SQLiteStatement s = getStatement(ShareSQLiteHelper.INSERT_STATEMENT);
             for (Share share : shares) {
                 ShareSQLiteHelper.bind(s, share, userId);
                 if (s.executeInsert() > -1) {
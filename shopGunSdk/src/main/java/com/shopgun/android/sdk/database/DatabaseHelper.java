@@ -16,9 +16,12 @@
 
 package com.shopgun.android.sdk.database;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.os.SystemClock;
 
 import com.shopgun.android.sdk.Constants;
 import com.shopgun.android.sdk.log.SgnLog;
@@ -28,6 +31,9 @@ import com.shopgun.android.sdk.log.SgnLog;
  * DatabaseHelper calls static methods to sub-classes (each subclass essentially being a table)
  * to do creation and upgrades. This way any sub-class can be instantiated and queried for data
  * without having the trouble of database creation and upgrades.
+ *
+ * <p>Upgrades are done in place, by running the {@link Migration migrations} between the old and
+ * the new version. Every bump of the database version must add a {@link Migration} to {@link #MIGRATIONS}.</p>
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
 
@@ -55,10 +61,58 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String ACCEPT_URL = "accept_url";
 
     private static final String DB_NAME = "shoppinglist.db";
-    private static final int DB_VERSION = 5;
+    private static final int DB_VERSION = 6;
+
+    /**
+     * Databases older than this predate the migrations, their tables are rebuilt
+     * with the current schema, keeping the rows that fit the schema.
+     */
+    private static final int MIN_MIGRATION_VERSION = 5;
+
+    /** The in-place migrations, ordered by version */
+    private static final Migration[] MIGRATIONS = new Migration[]{
+            new Migration(6) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    ListSQLiteHelper.createIndexes(db);
+                    ItemSQLiteHelper.createIndexes(db);
+                    ShareSQLiteHelper.createIndexes(db);
+                }
+            }
+    };
+
+    /** Max number of prepared statements, that each connection keeps */
+    private static final int SQL_CACHE_SIZE = 100;
 
     protected DatabaseHelper(Context c) {
         super(c, DB_NAME, null, DB_VERSION);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            enableWriteAheadLoggingJellyBean();
+        }
+    }
+
+    /**
+     * With write-ahead logging, readers get their own connections, and don't wait for
+     * (or block) the writer. This has to be set before the database is opened.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void enableWriteAheadLoggingJellyBean() {
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        db.setMaxSqlCacheSize(SQL_CACHE_SIZE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB &&
+                Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            enableWriteAheadLoggingHoneycomb(db);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void enableWriteAheadLoggingHoneycomb(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
     }
 
     @Override
@@ -71,12 +125,39 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // call all classes that extends this class, to let them know there has been an update
-        String format = "Upgrading database from version %s to %s. Calling static methods in subclasses";
-        SgnLog.i(TAG, String.format(format, oldVersion, newVersion));
-        ListSQLiteHelper.upgrade(db, oldVersion, newVersion);
-        ItemSQLiteHelper.upgrade(db, oldVersion, newVersion);
-        ShareSQLiteHelper.upgrade(db, oldVersion, newVersion);
+        // SQLiteOpenHelper runs the upgrade in a transaction, so either all migrations are applied, or none are
+        SgnLog.i(TAG, String.format("Upgrading database from version %s to %s", oldVersion, newVersion));
+        long start = SystemClock.elapsedRealtime();
+        if (oldVersion < MIN_MIGRATION_VERSION) {
+            ListSQLiteHelper.rebuild(db);
+            ItemSQLiteHelper.rebuild(db);
+            ShareSQLiteHelper.rebuild(db);
+        } else {
+            for (Migration m : MIGRATIONS) {
+                if (oldVersion < m.version && m.version <= newVersion) {
+                    m.migrate(db);
+                }
+            }
+        }
+        long time = SystemClock.elapsedRealtime() - start;
+        SgnLog.i(TAG, String.format("Upgraded database to version %s in %s ms", newVersion, time));
+    }
+
+    /**
+     * A single step, that changes the tables in place from {@code version-1} to {@code version}.
+     * Prefer {@code ALTER TABLE} for additive changes, and
+     * {@link DbUtils#rebuildTable(SQLiteDatabase, String, String)} for everything else.
+     */
+    abstract static class Migration {
+
+        final int version;
+
+        Migration(int version) {
+            this.version = version;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+
     }
 
 }
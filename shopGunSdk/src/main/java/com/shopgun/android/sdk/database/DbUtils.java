@@ -19,10 +19,13 @@ package com.shopgun.android.sdk.database;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 
 import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.model.Shoppinglist;
 import com.shopgun.android.sdk.model.ShoppinglistItem;
 import com.shopgun.android.sdk.model.User;
@@ -41,6 +44,9 @@ public class DbUtils {
 
     public static final String TAG = Constants.getTag(DbUtils.class);
 
+    /** Number of rows copied per statement, when a table is rebuilt */
+    public static final int COPY_BATCH_SIZE = 500;
+
     /**
      * Creates a full image of any data stored in the specific table in a specific database.
      * @param db A {@link SQLiteDatabase}
@@ -186,6 +192,117 @@ public class DbUtils {
         return offlineUserLists.size();
     }
 
+    /**
+     * Check if a table exists in the database.
+     * @param db A {@link SQLiteDatabase}
+     * @param table A table name
+     * @return {@code true} if the table exists, else {@code false}
+     */
+    public static boolean hasTable(SQLiteDatabase db, String table) {
+        String sql = "SELECT count(*) FROM sqlite_master WHERE type='table' AND name=?";
+        return DatabaseUtils.longForQuery(db, sql, new String[]{table}) > 0;
+    }
+
+    /**
+     * Get the column names of a table.
+     * @param db A {@link SQLiteDatabase}
+     * @param table A table name
+     * @return A list of column names, empty if the table doesn't exist
+     */
+    public static List<String> getColumns(SQLiteDatabase db, String table) {
+        Cursor c = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        return cursorToStrings(c, "name");
+    }
+
+    /**
+     * Rebuild a table in place, using the current schema. The table is renamed, the new table is created,
+     * and the columns the two tables have in common are copied in batches of {@link #COPY_BATCH_SIZE}.
+     * Rows that violate the new schema (e.g. a {@code null} in a {@code not null} column) are skipped.
+     *
+     * <p>Indexes are dropped along with the old table, so they must be (re)created afterwards.</p>
+     *
+     * @param db A {@link SQLiteDatabase}
+     * @param table The table to rebuild
+     * @param createTable The statement that creates the table
+     * @return The number of rows copied, or -1 if the rows couldn't be copied (the new table will be empty)
+     */
+    public static int rebuildTable(SQLiteDatabase db, String table, String createTable) {
+        if (!hasTable(db, table)) {
+            db.execSQL(createTable);
+            return 0;
+        }
+        String old = table + "_old";
+        db.execSQL("DROP TABLE IF EXISTS " + old);
+        db.execSQL("ALTER TABLE " + table + " RENAME TO " + old);
+        db.execSQL(createTable);
+        try {
+            List<String> columns = getColumns(db, table);
+            columns.retainAll(getColumns(db, old));
+            return columns.isEmpty() ? 0 : copyRows(db, old, table, columns, COPY_BATCH_SIZE);
+        } catch (SQLException e) {
+            SgnLog.e(TAG, "Could not copy rows to " + table, e);
+            db.execSQL("DELETE FROM " + table);
+            return -1;
+        } finally {
+            db.execSQL("DROP TABLE IF EXISTS " + old);
+        }
+    }
+
+    /**
+     * Copy the given columns from one table to another, in batches ordered by {@code rowid}.
+     * Each batch gets its own transaction, unless the caller already holds one (e.g. during
+     * {@link android.database.sqlite.SQLiteOpenHelper#onUpgrade(SQLiteDatabase, int, int) onUpgrade()}),
+     * in which case all batches commit, or roll back, together.
+     *
+     * @param db A {@link SQLiteDatabase}
+     * @param from The source table
+     * @param to The destination table
+     * @param columns The columns to copy, they must exist in both tables
+     * @param batchSize The max number of rows per batch
+     * @return The number of rows inserted
+     */
+    public static int copyRows(SQLiteDatabase db, String from, String to, List<String> columns, int batchSize) {
+        String cols = TextUtils.join(", ", columns);
+        SQLiteStatement next = db.compileStatement("SELECT ifnull(max(rowid), ?1) FROM (SELECT rowid FROM " + from +
+                " WHERE rowid > ?1 ORDER BY rowid LIMIT " + batchSize + ")");
+        SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + to + " (" + cols + ") SELECT " + cols +
+                " FROM " + from + " WHERE rowid > ? AND rowid <= ?");
+        SQLiteStatement changes = db.compileStatement("SELECT changes()");
+        try {
+            int count = 0;
+            long last = Long.MIN_VALUE;
+            while (true) {
+                next.bindLong(1, last);
+                long max = next.simpleQueryForLong();
+                if (max == last) {
+                    return count;
+                }
+                boolean transaction = !db.inTransaction();
+                if (transaction) {
+                    db.beginTransaction();
+                }
+                try {
+                    insert.bindLong(1, last);
+                    insert.bindLong(2, max);
+                    insert.execute();
+                    count += changes.simpleQueryForLong();
+                    if (transaction) {
+                        db.setTransactionSuccessful();
+                    }
+                } finally {
+                    if (transaction) {
+                        db.endTransaction();
+                    }
+                }
+                last = max;
+            }
+        } finally {
+            next.close();
+            insert.close();
+            changes.close();
+        }
+    }
+
     /**
      * SDK default mapping between int and boolean.
      * <p>
@@ -27,9 +27,6 @@ import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.model.ShoppinglistItem;
 import com.shopgun.android.sdk.utils.Utils;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -60,26 +57,39 @@ public class ItemSQLiteHelper extends DatabaseHelper {
                     USER + "  integer not null " +
                     ");";
     public static final String INSERT_STATEMENT = "INSERT OR REPLACE INTO " + TABLE + " VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)";
+    public static final String UPDATE_STATE_STATEMENT = "UPDATE OR REPLACE " + TABLE + " SET " + MODIFIED + "=?, " +
+            STATE + "=? WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=?";
+
+    /** Serves the item lookups by shoppinglist, and by previous id within a shoppinglist */
+    public static final String INDEX_USER_LIST = TABLE + "_user_list_idx";
+    /** Serves the cleanup of deleted items */
+    public static final String INDEX_USER_STATE = TABLE + "_user_state_idx";
+
+    public static final String CREATE_INDEX_USER_LIST =
+            "create index if not exists " + INDEX_USER_LIST + " on " + TABLE + "(" +
+                    USER + ", " + SHOPPINGLIST_ID + ", " + PREVIOUS_ID + ");";
+    public static final String CREATE_INDEX_USER_STATE =
+            "create index if not exists " + INDEX_USER_STATE + " on " + TABLE + "(" +
+                    USER + ", " + STATE + ");";
 
     public ItemSQLiteHelper(Context context) {
         super(context);
     }
 
     public static void bind(SQLiteStatement s, ShoppinglistItem sli, String userId) {
-        ContentValues cv = objectToContentValues(sli, userId);
-        DbUtils.bindOrNull(s, 1, cv.getAsString(ID));
-        DbUtils.bindOrNull(s, 2, cv.getAsString(ERN));
-        DbUtils.bindOrNull(s, 3, cv.getAsString(MODIFIED));
-        DbUtils.bindOrNull(s, 4, cv.getAsString(DESCRIPTION));
-        s.bindLong(5, cv.getAsInteger(COUNT));
-        s.bindLong(6, cv.getAsInteger(TICK));
-        DbUtils.bindOrNull(s, 7, cv.getAsString(OFFER_ID));
-        DbUtils.bindOrNull(s, 8, cv.getAsString(CREATOR));
-        DbUtils.bindOrNull(s, 9, cv.getAsString(SHOPPINGLIST_ID));
-        DbUtils.bindOrNull(s, 10, cv.getAsString(STATE));
-        DbUtils.bindOrNull(s, 11, cv.getAsString(PREVIOUS_ID));
-        DbUtils.bindOrNull(s, 12, cv.getAsString(META));
-        DbUtils.bindOrNull(s, 13, cv.getAsString(USER));
+        DbUtils.bindOrNull(s, 1, sli.getId());
+        DbUtils.bindOrNull(s, 2, sli.getErn());
+        DbUtils.bindOrNull(s, 3, Utils.dateToString(sli.getModified()));
+        DbUtils.bindOrNull(s, 4, sli.getDescription());
+        s.bindLong(5, sli.getCount());
+        s.bindLong(6, DbUtils.unescape(sli.isTicked()));
+        DbUtils.bindOrNull(s, 7, sli.getOfferId());
+        DbUtils.bindOrNull(s, 8, sli.getCreator());
+        DbUtils.bindOrNull(s, 9, sli.getShoppinglistId());
+        s.bindLong(10, sli.getState());
+        DbUtils.bindOrNull(s, 11, sli.getPreviousId());
+        DbUtils.bindOrNull(s, 12, sli.getMetaJson());
+        DbUtils.bindOrNull(s, 13, userId);
     }
 
     public static SQLiteStatement getInsertStatement(SQLiteDatabase db) {
@@ -89,24 +99,45 @@ public class ItemSQLiteHelper extends DatabaseHelper {
     public static void create(SQLiteDatabase db) {
         db.acquireReference();
         db.execSQL(CREATE_TABLE);
+        createIndexes(db);
         db.releaseReference();
     }
 
-    public static void upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    /**
+     * Rebuild the table with the current schema, keeping the rows that fit the schema.
+     * @param db A {@link SQLiteDatabase}
+     */
+    public static void rebuild(SQLiteDatabase db) {
         db.acquireReference();
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        int count = DbUtils.rebuildTable(db, TABLE, CREATE_TABLE);
+        createIndexes(db);
         db.releaseReference();
+        SgnLog.i(TAG, "Rebuilt " + TABLE + ", rows copied: " + count);
     }
 
+    static void createIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX_USER_LIST);
+        db.execSQL(CREATE_INDEX_USER_STATE);
+    }
+
+    /**
+     * Read the cursor into a list of {@link ShoppinglistItem}, and close the {@link Cursor} when finished.
+     * @param c A cursor over all columns of the table
+     * @return A list of {@link ShoppinglistItem}
+     */
     public static List<ShoppinglistItem> cursorToList(Cursor c) {
-        ArrayList<ShoppinglistItem> list = new ArrayList<ShoppinglistItem>();
-        for (ContentValues cv : DbUtils.cursorToContentValues(c)) {
-            ShoppinglistItem sli = ItemSQLiteHelper.contentValuesToObject(cv);
-            if (sli != null) {
-                list.add(sli);
+        try {
+            ArrayList<ShoppinglistItem> list = new ArrayList<ShoppinglistItem>(c.getCount());
+            if (c.moveToFirst()) {
+                Mapper m = new Mapper(c);
+                do {
+                    list.add(m.read(c));
+                } while (c.moveToNext());
             }
+            return list;
+        } finally {
+            DbUtils.closeCursor(c);
         }
-        return list;
     }
 
     public static ShoppinglistItem contentValuesToObject(ContentValues cv) {
@@ -122,12 +153,7 @@ public class ItemSQLiteHelper extends DatabaseHelper {
         sli.setShoppinglistId(cv.getAsString(SHOPPINGLIST_ID));
         sli.setState(cv.getAsInteger(STATE));
         sli.setPreviousId(cv.getAsString(PREVIOUS_ID));
-        try {
-            String meta = cv.getAsString(META);
-            sli.setMeta(meta == null ? null : new JSONObject(meta));
-        } catch (JSONException e) {
-            SgnLog.e(TAG, null, e);
-        }
+        sli.setMetaJson(cv.getAsString(META));
         sli.setUserId(cv.getAsInteger(USER));
         return sli;
     }
@@ -145,7 +171,7 @@ public class ItemSQLiteHelper extends DatabaseHelper {
         cv.put(SHOPPINGLIST_ID, sli.getShoppinglistId());
         cv.put(STATE, sli.getState());
         cv.put(PREVIOUS_ID, sli.getPreviousId());
-        cv.put(META, sli.getMeta().toString());
+        cv.put(META, sli.getMetaJson());
         cv.put(USER, userId);
         return cv;
     }
@@ -157,4 +183,48 @@ public class ItemSQLiteHelper extends DatabaseHelper {
         return cv;
     }
 
+    /**
+     * Reads rows directly into {@link ShoppinglistItem}, the column indexes are looked up once per cursor.
+     * The meta is kept as text, until it's used.
+     */
+    private static class Mapper {
+
+        final int id, ern, modified, description, count, tick, offerId, creator, shoppinglistId, state, previousId, meta, user;
+
+        Mapper(Cursor c) {
+            id = c.getColumnIndexOrThrow(ID);
+            ern = c.getColumnIndexOrThrow(ERN);
+            modified = c.getColumnIndexOrThrow(MODIFIED);
+            description = c.getColumnIndexOrThrow(DESCRIPTION);
+            count = c.getColumnIndexOrThrow(COUNT);
+            tick = c.getColumnIndexOrThrow(TICK);
+            offerId = c.getColumnIndexOrThrow(OFFER_ID);
+            creator = c.getColumnIndexOrThrow(CREATOR);
+            shoppinglistId = c.getColumnIndexOrThrow(SHOPPINGLIST_ID);
+            state = c.getColumnIndexOrThrow(STATE);
+            previousId = c.getColumnIndexOrThrow(PREVIOUS_ID);
+            meta = c.getColumnIndexOrThrow(META);
+            user = c.getColumnIndexOrThrow(USER);
+        }
+
+        ShoppinglistItem read(Cursor c) {
+            ShoppinglistItem sli = new ShoppinglistItem();
+            sli.setId(c.getString(id));
+            sli.setErn(c.getString(ern));
+            sli.setModified(Utils.stringToDate(c.getString(modified)));
+            sli.setDescription(c.getString(description));
+            sli.setCount(c.getInt(count));
+            sli.setTick(DbUtils.intToBool(c.getInt(tick)));
+            sli.setOfferId(c.getString(offerId));
+            sli.setCreator(c.getString(creator));
+            sli.setShoppinglistId(c.getString(shoppinglistId));
+            sli.setState(c.getInt(state));
+            sli.setPreviousId(c.getString(previousId));
+            sli.setMetaJson(c.getString(meta));
+            sli.setUserId(c.getInt(user));
+            return sli;
+        }
+
+    }
+
 }
@@ -28,9 +28,6 @@ import com.shopgun.android.sdk.model.Shoppinglist;
 import com.shopgun.android.sdk.model.interfaces.SyncState;
 import com.shopgun.android.sdk.utils.Utils;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -58,6 +55,18 @@ public class ListSQLiteHelper extends DatabaseHelper {
                     ");";
     public static final String INSERT_STATEMENT = "INSERT OR REPLACE INTO " + TABLE + " VALUES (?,?,?,?,?,?,?,?,?,?)";
 
+    /** Serves the lists of a user, in the order they are returned (by name) */
+    public static final String INDEX_USER_NAME = TABLE + "_user_name_idx";
+    /** Serves the lookup by previous id, in the same order */
+    public static final String INDEX_USER_PREVIOUS = TABLE + "_user_previous_idx";
+
+    public static final String CREATE_INDEX_USER_NAME =
+            "create index if not exists " + INDEX_USER_NAME + " on " + TABLE + "(" +
+                    USER + ", " + NAME + ");";
+    public static final String CREATE_INDEX_USER_PREVIOUS =
+            "create index if not exists " + INDEX_USER_PREVIOUS + " on " + TABLE + "(" +
+                    USER + ", " + PREVIOUS_ID + ", " + NAME + ");";
+
     public ListSQLiteHelper(Context context) {
         super(context);
     }
@@ -65,13 +74,25 @@ public class ListSQLiteHelper extends DatabaseHelper {
     public static void create(SQLiteDatabase db) {
         db.acquireReference();
         db.execSQL(CREATE_TABLE);
+        createIndexes(db);
         db.releaseReference();
     }
 
-    public static void upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    /**
+     * Rebuild the table with the current schema, keeping the rows that fit the schema.
+     * @param db A {@link SQLiteDatabase}
+     */
+    public static void rebuild(SQLiteDatabase db) {
         db.acquireReference();
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        int count = DbUtils.rebuildTable(db, TABLE, CREATE_TABLE);
+        createIndexes(db);
         db.releaseReference();
+        SgnLog.i(TAG, "Rebuilt " + TABLE + ", rows copied: " + count);
+    }
+
+    static void createIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX_USER_NAME);
+        db.execSQL(CREATE_INDEX_USER_PREVIOUS);
     }
 
     public static SQLiteStatement getInsertStatement(SQLiteDatabase db) {
@@ -87,20 +108,28 @@ public class ListSQLiteHelper extends DatabaseHelper {
         s.bindLong(6, sl.getState());
         DbUtils.bindOrNull(s, 7, sl.getPreviousId());
         DbUtils.bindOrNull(s, 8, sl.getType());
-        String meta = sl.getMeta() == null ? null : sl.getMeta().toString();
-        DbUtils.bindOrNull(s, 9, meta);
+        DbUtils.bindOrNull(s, 9, sl.getMetaJson());
         DbUtils.bindOrNull(s, 10, userId);
     }
 
+    /**
+     * Read the cursor into a list of {@link Shoppinglist}, and close the {@link Cursor} when finished.
+     * @param c A cursor over all columns of the table
+     * @return A list of {@link Shoppinglist}
+     */
     public static List<Shoppinglist> cursorToList(Cursor c) {
-        ArrayList<Shoppinglist> list = new ArrayList<Shoppinglist>();
-        for (ContentValues cv : DbUtils.cursorToContentValues(c)) {
-            Shoppinglist sl = ListSQLiteHelper.contentValuesToObject(cv);
-            if (sl != null) {
-                list.add(sl);
+        try {
+            ArrayList<Shoppinglist> list = new ArrayList<Shoppinglist>(c.getCount());
+            if (c.moveToFirst()) {
+                Mapper m = new Mapper(c);
+                do {
+                    list.add(m.read(c));
+                } while (c.moveToNext());
             }
+            return list;
+        } finally {
+            DbUtils.closeCursor(c);
         }
-        return list;
     }
 
     public static Shoppinglist contentValuesToObject(ContentValues cv) {
@@ -114,12 +143,7 @@ public class ListSQLiteHelper extends DatabaseHelper {
         sl.setState(state == null ? SyncState.TO_SYNC : state);
         sl.setPreviousId(cv.getAsString(PREVIOUS_ID));
         sl.setType(cv.getAsString(TYPE));
-        try {
-            String meta = cv.getAsString(META);
-            sl.setMeta(meta == null ? null : new JSONObject(meta));
-        } catch (JSONException e) {
-            SgnLog.e(TAG, null, e);
-        }
+        sl.setMetaJson(cv.getAsString(META));
         sl.setUserId(cv.getAsInteger(USER));
         return sl;
     }
@@ -134,10 +158,46 @@ public class ListSQLiteHelper extends DatabaseHelper {
         cv.put(STATE, sl.getState());
         cv.put(PREVIOUS_ID, sl.getPreviousId());
         cv.put(TYPE, sl.getType());
-        String meta = sl.getMeta() == null ? null : sl.getMeta().toString();
-        cv.put(META, meta);
+        cv.put(META, sl.getMetaJson());
         cv.put(USER, userId);
         return cv;
     }
 
+    /**
+     * Reads rows directly into {@link Shoppinglist}, the column indexes are looked up once per cursor.
+     * The meta is kept as text, until it's used.
+     */
+    private static class Mapper {
+
+        final int id, ern, modified, name, access, state, previousId, type, meta, user;
+
+        Mapper(Cursor c) {
+            id = c.getColumnIndexOrThrow(ID);
+            ern = c.getColumnIndexOrThrow(ERN);
+            modified = c.getColumnIndexOrThrow(MODIFIED);
+            name = c.getColumnIndexOrThrow(NAME);
+            access = c.getColumnIndexOrThrow(ACCESS);
+            state = c.getColumnIndexOrThrow(STATE);
+            previousId = c.getColumnIndexOrThrow(PREVIOUS_ID);
+            type = c.getColumnIndexOrThrow(TYPE);
+            meta = c.getColumnIndexOrThrow(META);
+            user = c.getColumnIndexOrThrow(USER);
+        }
+
+        Shoppinglist read(Cursor c) {
+            Shoppinglist sl = Shoppinglist.fromName(c.getString(name));
+            sl.setId(c.getString(id));
+            sl.setErn(c.getString(ern));
+            sl.setModified(Utils.stringToDate(c.getString(modified)));
+            sl.setAccess(c.getString(access));
+            sl.setState(c.isNull(state) ? SyncState.TO_SYNC : c.getInt(state));
+            sl.setPreviousId(c.getString(previousId));
+            sl.setType(c.getString(type));
+            sl.setMetaJson(c.getString(meta));
+            sl.setUserId(c.getInt(user));
+            return sl;
+        }
+
+    }
+
 }
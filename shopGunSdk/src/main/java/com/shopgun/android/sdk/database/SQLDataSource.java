@@ -16,16 +16,27 @@
 
 package com.shopgun.android.sdk.database;
 
+import android.annotation.TargetApi;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 
 import com.shopgun.android.sdk.Constants;
 import com.shopgun.android.sdk.log.SgnLog;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Class for handling the reference count to a {@link SQLiteDatabase}, and close the DB only when all queries are done.
+ *
+ * <p>Reads and writes follow different rules. Readers just {@link #acquireDb() acquire} the database,
+ * and (with write-ahead logging) run on their own connection, so they never wait for a writer.
+ * Writers {@link #acquireWriteDb() acquire} the database for writing, which serialises them, and
+ * gives them exclusive use of the {@link #getStatement(String) compiled statement cache}.</p>
  */
 public class SQLDataSource {
 
@@ -33,10 +44,15 @@ public class SQLDataSource {
 
     private final Object LOCK = new Object();
     private SQLiteOpenHelper mHelper;
-    private SQLiteDatabase mDatabase;
+    private volatile SQLiteDatabase mDatabase;
     private AtomicInteger mRefCount = new AtomicInteger();
     private boolean mOpen = false;
 
+    /** Held by the writer */
+    private final ReentrantLock mWriteLock = new ReentrantLock();
+    /** Statements compiled against {@link #mDatabase}, guarded by {@link #mWriteLock} */
+    private final Map<String, SQLiteStatement> mStatements = new HashMap<String, SQLiteStatement>();
+
     public SQLDataSource(SQLiteOpenHelper sqLiteHelper) {
         mHelper = sqLiteHelper;
     }
@@ -72,9 +88,7 @@ public class SQLDataSource {
      * @return {@code true} if DB is open, else {@code false}
      */
     public boolean isOpen() {
-        synchronized (LOCK) {
-            return mRefCount.get() > 0;
-        }
+        return mRefCount.get() > 0;
     }
 
     /**
@@ -90,16 +104,22 @@ public class SQLDataSource {
      * </p>
      * @return A {@link SQLiteDatabase}
      */
-    protected synchronized SQLiteDatabase acquireDb() {
+    protected SQLiteDatabase acquireDb() {
+        // While the DB is open, another reference can be taken without locking
+        int count;
+        while ((count = mRefCount.get()) > 0) {
+            if (mRefCount.compareAndSet(count, count + 1)) {
+                SQLiteDatabase db = mDatabase;
+                db.acquireReference();
+                return db;
+            }
+        }
         synchronized (LOCK) {
-            if (mDatabase == null || !mDatabase.isOpen()) {
+            if (mRefCount.get() == 0) {
                 mDatabase = mHelper.getWritableDatabase();
-                mRefCount.set(0);
-//                logRef("getWritableDatabase");
             }
             mDatabase.acquireReference();
             mRefCount.incrementAndGet();
-//            logRef("acquireDb");
             return mDatabase;
         }
     }
@@ -112,17 +132,98 @@ public class SQLDataSource {
      * {@link SQLDataSource#releaseDb()} (a one to one mapping)
      * , or we are going to start leaking memory.
      */
-    protected synchronized void releaseDb() {
+    protected void releaseDb() {
+        SQLiteDatabase db = mDatabase;
+        db.releaseReference();
+        int count;
+        while ((count = mRefCount.get()) > 1) {
+            if (mRefCount.compareAndSet(count, count - 1)) {
+                return;
+            }
+        }
+        // Last reference, close under the lock so no one can open the DB meanwhile
         synchronized (LOCK) {
-            mDatabase.releaseReference();
             if (mRefCount.decrementAndGet() == 0) {
+                closeStatements();
                 mHelper.close();
-//                logRef("close");
             }
-//            logRef("releaseDb");
         }
     }
 
+    /**
+     * Acquire the {@link SQLiteDatabase} for writing. Writers are serialised, so only one thread
+     * at a time writes to the database, and uses the {@link #getStatement(String) statement cache}.
+     * Every call must be followed by a call to {@link #releaseWriteDb()}.
+     * @return A {@link SQLiteDatabase}
+     */
+    protected SQLiteDatabase acquireWriteDb() {
+        mWriteLock.lock();
+        try {
+            return acquireDb();
+        } catch (RuntimeException e) {
+            mWriteLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Release the {@link SQLiteDatabase} acquired with {@link #acquireWriteDb()}.
+     */
+    protected void releaseWriteDb() {
+        try {
+            releaseDb();
+        } finally {
+            mWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Get a compiled statement from the cache, or compile and cache it. The statement belongs to
+     * the current connection, and must only be used while holding the database for writing.
+     * Any previous bindings are cleared.
+     * @param sql A SQL statement
+     * @return A {@link SQLiteStatement}
+     */
+    protected SQLiteStatement getStatement(String sql) {
+        if (!mWriteLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Cached statements require the database to be acquired for writing");
+        }
+        SQLiteStatement s = mStatements.get(sql);
+        if (s == null) {
+            s = mDatabase.compileStatement(sql);
+            mStatements.put(sql, s);
+        } else {
+            s.clearBindings();
+        }
+        return s;
+    }
+
+    /**
+     * Execute an UPDATE or DELETE statement.
+     * @param s A {@link SQLiteStatement}
+     * @return The number of rows affected
+     */
+    protected int executeUpdateDelete(SQLiteStatement s) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            return executeUpdateDeleteHoneycomb(s);
+        }
+        // Before Honeycomb there is a single connection, so changes() is from the same connection
+        s.execute();
+        return (int) getStatement("SELECT changes()").simpleQueryForLong();
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static int executeUpdateDeleteHoneycomb(SQLiteStatement s) {
+        return s.executeUpdateDelete();
+    }
+
+    private void closeStatements() {
+        for (SQLiteStatement s : mStatements.values()) {
+            s.close();
+        }
+        mStatements.clear();
+    }
+
     protected void logRef(String action) {
         SgnLog.d(TAG, String.format("Thread: %s, Action: %s, RefCount: %s", Thread.currentThread().getName(), action, mRefCount.get()));
     }
@@ -23,6 +23,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 
 import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.model.Share;
 
 import java.util.ArrayList;
@@ -51,6 +52,13 @@ public class ShareSQLiteHelper extends DatabaseHelper {
                     ");";
     public static final String INSERT_STATEMENT = "INSERT OR REPLACE INTO " + TABLE + " VALUES (?,?,?,?,?,?,?,?,?)";
 
+    /** Serves the shares of a shoppinglist, and the lookup by email within a shoppinglist */
+    public static final String INDEX_USER_LIST = TABLE + "_user_list_idx";
+
+    public static final String CREATE_INDEX_USER_LIST =
+            "create index if not exists " + INDEX_USER_LIST + " on " + TABLE + "(" +
+                    USER + ", " + SHOPPINGLIST_ID + ", " + EMAIL + ");";
+
     public ShareSQLiteHelper(Context context) {
         super(context);
     }
@@ -58,13 +66,24 @@ public class ShareSQLiteHelper extends DatabaseHelper {
     public static void create(SQLiteDatabase db) {
         db.acquireReference();
         db.execSQL(CREATE_TABLE);
+        createIndexes(db);
         db.releaseReference();
     }
 
-    public static void upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    /**
+     * Rebuild the table with the current schema, keeping the rows that fit the schema.
+     * @param db A {@link SQLiteDatabase}
+     */
+    public static void rebuild(SQLiteDatabase db) {
         db.acquireReference();
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        int count = DbUtils.rebuildTable(db, TABLE, CREATE_TABLE);
+        createIndexes(db);
         db.releaseReference();
+        SgnLog.i(TAG, "Rebuilt " + TABLE + ", rows copied: " + count);
+    }
+
+    static void createIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX_USER_LIST);
     }
 
     public static SQLiteStatement getInsertStatement(SQLiteDatabase db) {
@@ -82,15 +101,35 @@ public class ShareSQLiteHelper extends DatabaseHelper {
         s.bindLong(9, share.getState());
     }
 
+    /**
+     * Read the cursor into a list of {@link Share}, and close the {@link Cursor} when finished.
+     * @param c A cursor over all columns of the table
+     * @param shoppinglistId The {@link com.shopgun.android.sdk.model.Shoppinglist#getId()} the shares belong to
+     * @return A list of {@link Share}
+     */
     public static List<Share> cursorToList(Cursor c, String shoppinglistId) {
-        ArrayList<Share> list = new ArrayList<Share>();
-        for (ContentValues cv : DbUtils.cursorToContentValues(c)) {
-            Share s = ShareSQLiteHelper.contentValuesToObject(cv, shoppinglistId);
-            if (s != null) {
-                list.add(s);
+        try {
+            ArrayList<Share> list = new ArrayList<Share>(c.getCount());
+            if (c.moveToFirst()) {
+                int email = c.getColumnIndexOrThrow(EMAIL);
+                int acceptUrl = c.getColumnIndexOrThrow(ACCEPT_URL);
+                int access = c.getColumnIndexOrThrow(ACCESS);
+                int name = c.getColumnIndexOrThrow(NAME);
+                int accepted = c.getColumnIndexOrThrow(ACCEPTED);
+                int state = c.getColumnIndexOrThrow(STATE);
+                do {
+                    Share s = new Share(c.getString(email), c.getString(access), c.getString(acceptUrl));
+                    s.setShoppinglistId(shoppinglistId);
+                    s.setName(c.getString(name));
+                    s.setAccepted(0 < c.getInt(accepted));
+                    s.setState(c.getInt(state));
+                    list.add(s);
+                } while (c.moveToNext());
             }
+            return list;
+        } finally {
+            DbUtils.closeCursor(c);
         }
-        return list;
     }
 
     public static Share contentValuesToObject(ContentValues cv, String shoppinglistId) {
@@ -21,6 +21,7 @@ import android.os.Parcelable;
 
 import com.shopgun.android.sdk.Constants;
 import com.shopgun.android.sdk.api.MetaKeys;
+import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.model.interfaces.IErn;
 import com.shopgun.android.sdk.model.interfaces.IJson;
 import com.shopgun.android.sdk.model.interfaces.SyncState;
@@ -113,6 +114,8 @@ public class Shoppinglist implements Comparable<Shoppinglist>, SyncState<Shoppin
     private String mPrevId;
     private String mType;
     private JSONObject mMeta;
+    /** Meta, as JSON text that is yet to be parsed, see {@link #setMetaJson(String)} */
+    private String mMetaJson;
     private HashMap<String, Share> mShares = new HashMap<String, Share>(1);
     private int mUserId = -1;
     private int mSyncState = SyncState.TO_SYNC;
@@ -469,7 +472,7 @@ public class Shoppinglist implements Comparable<Shoppinglist>, SyncState<Shoppin
      * @return A {@link JSONObject}
      */
     public JSONObject getMeta() {
-        if (mMeta == null) {
+        if (meta() == null) {
             mMeta = new JSONObject();
             setModified(new Date());
         }
@@ -495,9 +498,48 @@ public class Shoppinglist implements Comparable<Shoppinglist>, SyncState<Shoppin
      */
     public Shoppinglist setMeta(JSONObject meta) {
         mMeta = meta == null ? new JSONObject() : meta;
+        mMetaJson = null;
         return this;
     }
 
+    /**
+     * Set the meta as JSON text. The text isn't parsed until the meta is needed, which saves
+     * parsing the meta of every row when reading from the database.
+     * @param json A JSON object as text, or {@code null}
+     * @return This object
+     */
+    public Shoppinglist setMetaJson(String json) {
+        if (json == null) {
+            return setMeta(null);
+        }
+        mMeta = null;
+        mMetaJson = json;
+        return this;
+    }
+
+    /**
+     * Get the meta as JSON text, without parsing it if it hasn't been parsed yet.
+     * @return A JSON object as text, or {@code null} if no meta has been set
+     */
+    public String getMetaJson() {
+        if (mMetaJson != null) {
+            return mMetaJson;
+        }
+        return mMeta == null ? null : mMeta.toString();
+    }
+
+    private JSONObject meta() {
+        if (mMetaJson != null) {
+            try {
+                mMeta = new JSONObject(mMetaJson);
+            } catch (JSONException e) {
+                SgnLog.e(TAG, null, e);
+            }
+            mMetaJson = null;
+        }
+        return mMeta;
+    }
+
     /**
      * Get the shoppinglist theme id.
      * @return A theme id. If no id have been set it returns 'default'.
@@ -604,10 +646,11 @@ public class Shoppinglist implements Comparable<Shoppinglist>, SyncState<Shoppin
         } else if (!mErn.equals(other.mErn))
             return false;
 
-        if (mMeta == null) {
-            if (other.mMeta != null)
+        JSONObject meta = meta();
+        if (meta == null) {
+            if (other.meta() != null)
                 return false;
-        } else if (!SgnJson.jsonObjectEquals(mMeta, other.mMeta))
+        } else if (!SgnJson.jsonObjectEquals(meta, other.meta()))
             return false;
 
         if (modified) {
@@ -661,7 +704,7 @@ public class Shoppinglist implements Comparable<Shoppinglist>, SyncState<Shoppin
         int result = 1;
         result = prime * result + ((mAccess == null) ? 0 : mAccess.hashCode());
         result = prime * result + ((mErn == null) ? 0 : mErn.hashCode());
-        result = prime * result + SgnJson.jsonObjectHashCode(mMeta);
+        result = prime * result + SgnJson.jsonObjectHashCode(meta());
         result = prime * result
                 + ((mModified == null) ? 0 : mModified.hashCode());
         result = prime * result + ((mName == null) ? 0 : mName.hashCode());
@@ -690,7 +733,7 @@ public class Shoppinglist implements Comparable<Shoppinglist>, SyncState<Shoppin
         dest.writeLong(mModified != null ? mModified.getTime() : -1);
         dest.writeString(this.mPrevId);
         dest.writeString(this.mType);
-        dest.writeString(this.mMeta.toString());
+        dest.writeString(mMetaJson != null ? mMetaJson : mMeta.toString());
         dest.writeTypedList(new ArrayList<Share>(mShares.values()));
         dest.writeInt(this.mUserId);
         dest.writeInt(this.mSyncState);
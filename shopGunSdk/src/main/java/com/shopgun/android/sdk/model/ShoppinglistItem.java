@@ -21,6 +21,7 @@ import android.os.Parcelable;
 
 import com.shopgun.android.sdk.Constants;
 import com.shopgun.android.sdk.api.MetaKeys;
+import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.model.interfaces.IJson;
 import com.shopgun.android.sdk.model.interfaces.SyncState;
 import com.shopgun.android.sdk.shoppinglists.ListManager;
@@ -110,6 +111,8 @@ public class ShoppinglistItem implements Comparable<ShoppinglistItem>, SyncState
     private String mShoppinglistId;
     private String mPrevId;
     private JSONObject mMeta;
+    /** Meta, as JSON text that is yet to be parsed, see {@link #setMetaJson(String)} */
+    private String mMetaJson;
     private int mUserId = -1;
     private int mSyncState = SyncState.TO_SYNC;
 
@@ -464,7 +467,7 @@ public class ShoppinglistItem implements Comparable<ShoppinglistItem>, SyncState
      * @return A meta object
      */
     public JSONObject getMeta() {
-        if (mMeta == null) {
+        if (meta() == null) {
             mMeta = new JSONObject();
             mModified = new Date();
         }
@@ -483,9 +486,48 @@ public class ShoppinglistItem implements Comparable<ShoppinglistItem>, SyncState
      */
     public ShoppinglistItem setMeta(JSONObject meta) {
         mMeta = meta == null ? new JSONObject() : meta;
+        mMetaJson = null;
         return this;
     }
 
+    /**
+     * Set the meta as JSON text. The text isn't parsed until the meta is needed, which saves
+     * parsing the meta of every row when reading from the database.
+     * @param json A JSON object as text, or {@code null}
+     * @return This object
+     */
+    public ShoppinglistItem setMetaJson(String json) {
+        if (json == null) {
+            return setMeta(null);
+        }
+        mMeta = null;
+        mMetaJson = json;
+        return this;
+    }
+
+    /**
+     * Get the meta as JSON text, without parsing it if it hasn't been parsed yet.
+     * @return A JSON object as text, or {@code null} if no meta has been set
+     */
+    public String getMetaJson() {
+        if (mMetaJson != null) {
+            return mMetaJson;
+        }
+        return mMeta == null ? null : mMeta.toString();
+    }
+
+    private JSONObject meta() {
+        if (mMetaJson != null) {
+            try {
+                mMeta = new JSONObject(mMetaJson);
+            } catch (JSONException e) {
+                SgnLog.e(TAG, null, e);
+            }
+            mMetaJson = null;
+        }
+        return mMeta;
+    }
+
     /**
      * Get the id, of the user that has this item.
      * <p>This is mostly a use case when storing the item in a DB, where several
@@ -515,7 +557,7 @@ public class ShoppinglistItem implements Comparable<ShoppinglistItem>, SyncState
      * @return A comment, or {@code null}
      */
     public String getComment() {
-        String comment = mMeta.optString(MetaKeys.COMMENT);
+        String comment = meta().optString(MetaKeys.COMMENT);
         return comment.length() == 0 ? null : comment;
     }
 
@@ -585,10 +627,11 @@ public class ShoppinglistItem implements Comparable<ShoppinglistItem>, SyncState
                 return false;
         } else if (!mId.equals(other.mId))
             return false;
-        if (mMeta == null) {
-            if (other.mMeta != null)
+        JSONObject meta = meta();
+        if (meta == null) {
+            if (other.meta() != null)
                 return false;
-        } else if (!SgnJson.jsonObjectEquals(mMeta, other.mMeta))
+        } else if (!SgnJson.jsonObjectEquals(meta, other.meta()))
             return false;
 
 
@@ -660,7 +703,7 @@ public class ShoppinglistItem implements Comparable<ShoppinglistItem>, SyncState
                 + ((mDescription == null) ? 0 : mDescription.hashCode());
         result = prime * result + ((mErn == null) ? 0 : mErn.hashCode());
         result = prime * result + ((mId == null) ? 0 : mId.hashCode());
-        result = prime * result + SgnJson.jsonObjectHashCode(mMeta);
+        result = prime * result + SgnJson.jsonObjectHashCode(meta());
         result = prime * result
                 + ((mModified == null) ? 0 : mModified.hashCode());
         result = prime * result + ((mOffer == null) ? 0 : mOffer.hashCode());
@@ -697,7 +740,7 @@ public class ShoppinglistItem implements Comparable<ShoppinglistItem>, SyncState
         dest.writeParcelable(this.mOffer, flags);
         dest.writeString(this.mShoppinglistId);
         dest.writeString(this.mPrevId);
-        dest.writeString(this.mMeta.toString());
+        dest.writeString(mMetaJson != null ? mMetaJson : mMeta.toString());
         dest.writeInt(this.mUserId);
         dest.writeInt(this.mSyncState);
     }
@@ -49,12 +49,39 @@ public interface Cache {
         public final long expires;
         public final Object object;
         public long size;
+        /** The ETag of the response that created this item, or {@code null} */
+        public String etag;
+        /** The Last-Modified date of the response that created this item, or {@code null} */
+        public String lastModified;
 
         public Item(Object o, long timeToLive) {
             this.expires = System.currentTimeMillis() + timeToLive;
             this.object = o;
         }
 
+        /**
+         * Returns true if the Item can be revalidated with a conditional request,
+         * once it has expired.
+         * @return {@code true} if the item has an ETag or Last-Modified date, else {@code false}
+         */
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * Create a copy of this Item with a new time to live, e.g. when the API has confirmed
+         * that the content haven't changed.
+         * @param timeToLive The new time to live in milliseconds
+         * @return A new {@link Item}
+         */
+        public Item refresh(long timeToLive) {
+            Item i = new Item(object, timeToLive);
+            i.size = size;
+            i.etag = etag;
+            i.lastModified = lastModified;
+            return i;
+        }
+
         /**
          * Returns true if the Item is still valid.
          * this is based on the time to live factor
@@ -19,6 +19,7 @@ package com.shopgun.android.sdk.network;
 import android.os.Process;
 
 import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.network.impl.DeadlineExceededError;
 
 import java.util.concurrent.BlockingQueue;
 
@@ -29,8 +30,8 @@ public class CacheDispatcher extends Thread {
     /** The queue of requests to service. */
     private final BlockingQueue<Request<?>> mQueue;
 
-    /** The queue of requests to service. */
-    private final BlockingQueue<Request<?>> mNetworkQueue;
+    /** The scheduler of requests going out to the network. */
+    private final TrafficScheduler mNetworkQueue;
 
     /** The cache to write to. */
     private final Cache mCache;
@@ -41,7 +42,7 @@ public class CacheDispatcher extends Thread {
     /** Used for telling us to die. */
     private volatile boolean mQuit = false;
 
-    public CacheDispatcher(BlockingQueue<Request<?>> cacheQueue, BlockingQueue<Request<?>> networkQueue, Cache cache, Delivery delivery) {
+    public CacheDispatcher(BlockingQueue<Request<?>> cacheQueue, TrafficScheduler networkQueue, Cache cache, Delivery delivery) {
         mQueue = cacheQueue;
         mNetworkQueue = networkQueue;
         mCache = cache;
@@ -77,18 +78,48 @@ public class CacheDispatcher extends Thread {
                 continue;
             } else {
                 request.addEvent("received-by-cache-dispatcher");
+                request.markStage(Request.Stage.CACHE_TAKE);
             }
 
             if (!request.ignoreCache()) {
                 Response<?> response = request.parseCache(mCache);
                 // if the cache is valid, then return it
                 if (response != null) {
+                    request.markStage(Request.Stage.PARSE_END);
                     request.addEvent("post-cache-item");
                     // Parse the response here on the worker thread.
                     request.setCacheHit(true);
                     mDelivery.postResponse(request, response);
                     continue;
                 }
+
+                if (request.getMethod() == Request.Method.GET) {
+                    // An expired item may still be valid, the API will tell us
+                    Cache.Item stale = NetworkUtils.peek(mCache, request.getCacheKey());
+                    if (stale != null && stale.hasValidators()) {
+                        request.addEvent("revalidate-expired-cache-item");
+                        request.setStaleCacheItem(stale);
+                    }
+
+                    // Don't deliver again, if the request is re-added e.g. after a session error
+                    if (request.isStaleWhileRevalidate() && !request.isStaleResponseDelivered() &&
+                            mCache instanceof PeekableCache) {
+                        Response<?> staleResponse = request.parseCache(new StaleCache((PeekableCache) mCache));
+                        // Only deliver an actual result, e.g. model requests answer with an internal error once loaded
+                        if (staleResponse != null && staleResponse.isSuccess()) {
+                            request.addEvent("post-stale-cache-item");
+                            request.setStaleResponseDelivered(true);
+                            staleResponse.intermediate = true;
+                            mDelivery.postResponse(request, staleResponse);
+                        }
+                    }
+                }
+            }
+
+            if (request.isDeadlineExceeded()) {
+                request.addEvent("deadline-exceeded");
+                NetworkUtils.postError(mDelivery, request, Response.fromError(new DeadlineExceededError()));
+                continue;
             }
 
             request.addEvent("add-to-network-queue");
@@ -97,4 +128,33 @@ public class CacheDispatcher extends Thread {
         }
     }
 
+    /**
+     * A view of a {@link Cache}, that returns items even if they have expired.
+     */
+    private static class StaleCache implements PeekableCache {
+
+        private final PeekableCache mCache;
+
+        StaleCache(PeekableCache cache) {
+            mCache = cache;
+        }
+
+        public void put(Request<?> request, Response<?> response) {
+            // Read only
+        }
+
+        public Item get(String key) {
+            return mCache.peek(key);
+        }
+
+        public Item peek(String key) {
+            return mCache.peek(key);
+        }
+
+        public void clear() {
+            // Read only
+        }
+
+    }
+
 }
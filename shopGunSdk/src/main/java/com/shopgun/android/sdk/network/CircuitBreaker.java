@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import android.os.SystemClock;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.log.SgnLog;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A circuit breaker per host and endpoint family (see {@link RequestMetrics#getEndpointFamily(String)}).
+ *
+ * <p>When requests to an endpoint have failed a number of times in a row, with a server side network
+ * error (see {@link NetworkUtils#isServerSideFailure(ShopGunError)}) or a transient error from the API,
+ * the circuit opens and requests are failed immediately with
+ * {@link ShopGunError.Code#SERVICE_UNAVAILABLE}, rather than adding load to a degraded API.
+ * After a while a single request is let through, if it succeeds the circuit closes again,
+ * otherwise it stays open for another period.</p>
+ */
+public class CircuitBreaker {
+
+    public static final String TAG = Constants.getTag(CircuitBreaker.class);
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_DURATION = 30000;
+
+    /** The max number of circuits, requests to other endpoints are always allowed */
+    private static final int MAX_CIRCUITS = 64;
+
+    private final Map<String, Circuit> mCircuits = new HashMap<String, Circuit>();
+    private volatile int mFailureThreshold;
+    private volatile long mOpenDuration;
+    private volatile boolean mEnabled = true;
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    /**
+     * Create a new circuit breaker.
+     * @param failureThreshold The number of consecutive failures that opens a circuit
+     * @param openDuration The time a circuit stays open, before a request is let through, in milliseconds
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration) {
+        setFailureThreshold(failureThreshold);
+        setOpenDuration(openDuration);
+    }
+
+    public int getFailureThreshold() {
+        return mFailureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+        }
+        mFailureThreshold = failureThreshold;
+    }
+
+    public long getOpenDuration() {
+        return mOpenDuration;
+    }
+
+    public void setOpenDuration(long openDuration) {
+        mOpenDuration = openDuration;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Enable or disable the circuit breaker, while disabled all requests are allowed.
+     * @param enabled {@code true} to enable, else {@code false}
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) {
+            reset();
+        }
+    }
+
+    /**
+     * Close all circuits.
+     */
+    public void reset() {
+        synchronized (mCircuits) {
+            mCircuits.clear();
+        }
+    }
+
+    /**
+     * Get the state of the circuit for a key.
+     * @param key A key, see {@link #getKey(String)}
+     * @return The state of the circuit
+     */
+    public State getState(String key) {
+        synchronized (mCircuits) {
+            Circuit c = mCircuits.get(key);
+            return c == null ? State.CLOSED : c.state;
+        }
+    }
+
+    /**
+     * Determine if a request may be performed. If this returns {@code true} the outcome of the request
+     * must be reported with {@link #onSuccess(String)}, {@link #onFailure(String)} or {@link #onAbort(String)}.
+     * @param key A key, see {@link #getKey(String)}
+     * @return {@code true} if the request may be performed, {@code false} if it should fail immediately
+     */
+    public boolean allowRequest(String key) {
+
+        if (!mEnabled) {
+            return true;
+        }
+
+        synchronized (mCircuits) {
+            Circuit c = mCircuits.get(key);
+            if (c == null) {
+                return true;
+            }
+            switch (c.state) {
+                case OPEN:
+                    if (SystemClock.elapsedRealtime() - c.openedAt < mOpenDuration) {
+                        return false;
+                    }
+                    // Let a single request through, to probe the API
+                    c.state = State.HALF_OPEN;
+                    return true;
+                case HALF_OPEN:
+                    // The probe is still in flight
+                    return false;
+                default:
+                    return true;
+            }
+        }
+
+    }
+
+    /**
+     * Report a successful request, this closes the circuit.
+     * @param key A key, see {@link #getKey(String)}
+     */
+    public void onSuccess(String key) {
+        synchronized (mCircuits) {
+            mCircuits.remove(key);
+        }
+    }
+
+    /**
+     * Report a request that was aborted before it completed. If the request was probing the API,
+     * a new probe is let through.
+     * @param key A key, see {@link #getKey(String)}
+     */
+    public void onAbort(String key) {
+        synchronized (mCircuits) {
+            Circuit c = mCircuits.get(key);
+            if (c != null && c.state == State.HALF_OPEN) {
+                c.state = State.OPEN;
+            }
+        }
+    }
+
+    /**
+     * Report a failed request.
+     * @param key A key, see {@link #getKey(String)}
+     */
+    public void onFailure(String key) {
+
+        if (!mEnabled) {
+            return;
+        }
+
+        synchronized (mCircuits) {
+            Circuit c = mCircuits.get(key);
+            if (c == null) {
+                if (mCircuits.size() >= MAX_CIRCUITS) {
+                    return;
+                }
+                c = new Circuit();
+                mCircuits.put(key, c);
+            }
+            c.failures++;
+            if (c.state == State.HALF_OPEN || (c.state == State.CLOSED && c.failures >= mFailureThreshold)) {
+                SgnLog.w(TAG, String.format(Locale.US, "Circuit opened for %s, after %d failures", key, c.failures));
+                c.state = State.OPEN;
+                c.openedAt = SystemClock.elapsedRealtime();
+            }
+        }
+
+    }
+
+    /**
+     * Get the key of the circuit, an url belongs to. The key is the host and the endpoint family
+     * e.g. {@code api.etilbudsavis.dk/v2/offers}.
+     * @param url An url
+     * @return A key
+     */
+    public static String getKey(String url) {
+        if (url == null) {
+            return RequestMetrics.OTHER;
+        }
+        int start = url.indexOf("://");
+        start = start == -1 ? 0 : start + 3;
+        int end = url.indexOf('/', start);
+        String host = end == -1 ? url.substring(start) : url.substring(start, end);
+        return host + RequestMetrics.getEndpointFamily(url);
+    }
+
+    public enum State {
+        /** Requests are allowed */
+        CLOSED,
+        /** Requests are failed immediately */
+        OPEN,
+        /** A single request have been let through, to probe the API */
+        HALF_OPEN
+    }
+
+    private static class Circuit {
+        State state = State.CLOSED;
+        int failures = 0;
+        long openedAt = 0;
+    }
+
+}
@@ -43,8 +43,18 @@ public interface Delivery {
             mRequest.addEvent("request-on-new-thread");
 
             if (mRequest.isCanceled()) {
-                mRequest.finish("cancelled-at-delivery");
+                if (!mResponse.intermediate) {
+                    mRequest.finish("cancelled-at-delivery");
+                }
+            } else if (mResponse.intermediate) {
+                // The request is still refreshing, it'll be finished by the network stage
+                mRequest.markStage(Request.Stage.DELIVERY);
+                mRequest.addEvent("intermediate-response-delivered");
+                mRequest.setStaleResponse(true);
+                mRequest.deliverResponse(mResponse.result, mResponse.error);
             } else {
+                mRequest.setStaleResponse(false);
+                mRequest.markStage(Request.Stage.DELIVERY);
                 mRequest.finish("execution-finished-successfully");
                 mRequest.deliverResponse(mResponse.result, mResponse.error);
             }
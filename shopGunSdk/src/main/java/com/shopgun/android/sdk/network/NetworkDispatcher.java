@@ -23,16 +23,19 @@ import com.shopgun.android.sdk.SessionManager;
 import com.shopgun.android.sdk.ShopGun;
 import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.network.Request.Method;
+import com.shopgun.android.sdk.network.Request.TrafficClass;
+import com.shopgun.android.sdk.network.impl.CircuitOpenError;
+import com.shopgun.android.sdk.network.impl.DeadlineExceededError;
+import com.shopgun.android.sdk.network.impl.ParseError;
 import com.shopgun.android.sdk.utils.Api.Endpoint;
-import com.shopgun.android.sdk.utils.HashUtils;
 import com.shopgun.android.sdk.utils.HeaderUtils;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.net.HttpURLConnection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 
 public class NetworkDispatcher extends Thread {
 
@@ -41,8 +44,8 @@ public class NetworkDispatcher extends Thread {
     /** ShopGun object controlling the whole lot */
     private final ShopGun mShopGun;
 
-    /** The queue of requests to service. */
-    private final BlockingQueue<Request<?>> mQueue;
+    /** The scheduler of requests to service. */
+    private final TrafficScheduler mQueue;
 
     /** The RequestQueue this NetworkDispatcher receives Requests from */
     private final RequestQueue mRequestQueue;
@@ -56,11 +59,15 @@ public class NetworkDispatcher extends Thread {
     /** For posting responses and errors. */
     private final Delivery mDelivery;
 
+    /** For parsing responses off the network threads. */
+    private final Executor mParser;
+
     /** Used for telling us to die. */
     private volatile boolean mQuit = false;
 
-    public NetworkDispatcher(ShopGun shopGun, RequestQueue requestQueue, BlockingQueue<Request<?>> queue, Network network, Cache cache, Delivery delivery) {
+    public NetworkDispatcher(ShopGun shopGun, RequestQueue requestQueue, TrafficScheduler queue, Network network, Cache cache, Delivery delivery, Executor parser) {
         mQueue = queue;
+        mParser = parser;
         mNetwork = network;
         mCache = cache;
         mDelivery = delivery;
@@ -91,6 +98,9 @@ public class NetworkDispatcher extends Thread {
                 continue;
             }
 
+            // Remember the class holding the quota, the request may be re-added while we process it
+            TrafficClass trafficClass = request.getScheduledClass();
+
             try {
 
                 // If the request was cancelled already, do not perform the network request.
@@ -101,60 +111,240 @@ public class NetworkDispatcher extends Thread {
                     request.addEvent("recieved-by-network-dispatcher");
                 }
 
+                if (request.isDeadlineExceeded()) {
+                    request.addEvent("deadline-exceeded");
+                    postError(request, Response.fromError(new DeadlineExceededError()));
+                    continue;
+                }
+
                 prepare(request);
 
-                // Perform the network request.
-                NetworkResponse networkResponse = mNetwork.performRequest(request);
+                String circuit = CircuitBreaker.getKey(request.getUrl());
+                if (!mRequestQueue.getCircuitBreaker().allowRequest(circuit)) {
+                    request.addEvent("circuit-open");
+                    postError(request, Response.fromError(new CircuitOpenError(circuit)));
+                    continue;
+                }
 
-                appendLogging(request, networkResponse);
+                // Perform the network request.
+                request.markStage(Request.Stage.NETWORK_START);
+                NetworkResponse networkResponse = performRequest(request, circuit);
+
+                if (isNotModified(request, networkResponse)) {
+
+                    Response<?> cached = revalidate(request, networkResponse);
+                    request.markStage(Request.Stage.PARSE_END);
+                    if (cached != null) {
+                        request.setNetworkResponse(networkResponse);
+                        request.setResponseCached(true);
+                        updateSessionInfo(networkResponse.headers);
+                        if (request.isStaleResponseDelivered() && !request.isFinalResponseRequired()) {
+                            // The stale response is still valid, no need to deliver it again
+                            request.finish("stale-response-not-modified");
+                        } else {
+                            request.setCacheHit(true);
+                            mDelivery.postResponse(request, cached);
+                        }
+                        continue;
+                    }
 
-                request.addEvent("parsing-network-response");
-                Response<?> response = request.parseNetworkResponse(networkResponse);
+                    // Some items have been evicted from cache, so the full response is needed
+                    request.addEvent("revalidated-cache-incomplete");
+                    request.setStaleCacheItem(null);
+                    request.getHeaders().remove(HeaderUtils.IF_NONE_MATCH);
+                    request.getHeaders().remove(HeaderUtils.IF_MODIFIED_SINCE);
+                    networkResponse = performRequest(request, circuit);
 
-                if (response.isSuccess()) {
+                }
 
-                    updateSessionInfo(networkResponse.headers);
-                    mCache.put(request, response);
-                    mDelivery.postResponse(request, response);
+                request.setNetworkResponse(networkResponse);
 
+                if (networkResponse.streamed) {
+                    // Already parsed while reading, what's left is cheap
+                    handleNetworkResponse(request, networkResponse);
                 } else {
+                    // Hand off parsing, so this thread can go back to the network
+                    request.addEvent("handoff-to-parser");
+                    mParser.execute(new ParseTask(request, networkResponse));
+                }
 
-                    if (SessionManager.recoverableError(response.error)) {
 
-                        request.addEvent("recoverable-session-error");
+            } catch (ShopGunError e) {
 
-                        if (isSessionEndpoint(request)) {
+                if (request.isCanceled()) {
+                    // The connection was aborted, no one is waiting for the response
+                    request.finish("network-dispatcher-cancelled-in-flight");
+                    continue;
+                }
 
-                            mDelivery.postResponse(request, response);
+                if (request.isDeadlineExceeded()) {
+                    // The connection timed out, or was aborted when the deadline was reached
+                    request.addEvent("deadline-exceeded");
+                    postError(request, Response.fromError(new DeadlineExceededError()));
+                    continue;
+                }
 
-                        } else {
+                request.addEvent("network-error");
+                if (!retry(request, e, null)) {
+                    postError(request, Response.fromError(e));
+                }
+
+            } finally {
+                mQueue.release(trafficClass);
+            }
+        }
+    }
 
-                            // Query the session manager to perform an update
-                            if (mShopGun.getSessionManager().recover(response.error)) {
-                                mRequestQueue.add(request);
-                            } else {
-                                mDelivery.postResponse(request, response);
-                            }
+    /**
+     * Parse the response from the network, and deliver it. This runs on the parse executor,
+     * or on the dispatcher if the response was streamed.
+     */
+    private void handleNetworkResponse(Request<?> request, NetworkResponse networkResponse) {
 
-                        }
+        request.addEvent("parsing-network-response");
+        Response<?> response;
+        try {
+            response = request.parseNetworkResponse(networkResponse);
+        } catch (RuntimeException e) {
+            // A faulty parser must not take down the parser, or the dispatcher thread
+            SgnLog.e(TAG, "Failed to parse response for " + request.getClass().getSimpleName(), e);
+            request.markStage(Request.Stage.PARSE_END);
+            postError(request, Response.fromError(new ParseError(e, request.getClass())));
+            return;
+        }
+        request.markStage(Request.Stage.PARSE_END);
+
+        if (response.isSuccess()) {
+
+            updateSessionInfo(networkResponse.headers);
+            applyValidators(request, response, networkResponse.headers);
+            boolean unchanged = request.isStaleResponseDelivered() && !request.isFinalResponseRequired() &&
+                    NetworkUtils.isCacheContentUnchanged(mCache, response);
+            mCache.put(request, response);
+            request.setResponseCached(NetworkUtils.shouldCache(request, response));
+            if (unchanged) {
+                request.finish("stale-response-unchanged");
+            } else {
+                mDelivery.postResponse(request, response);
+            }
 
-                    } else {
+        } else {
+
+            if (SessionManager.recoverableError(response.error)) {
+
+                request.addEvent("recoverable-session-error");
+
+                if (isSessionEndpoint(request)) {
+
+                    postError(request, response);
 
-                        request.addEvent("non-recoverable-error");
-                        mDelivery.postResponse(request, response);
+                } else {
 
+                    // Query the session manager to perform an update
+                    if (mShopGun.getSessionManager().recover(response.error)) {
+                        mRequestQueue.add(request);
+                    } else {
+                        postError(request, response);
                     }
 
                 }
 
+            } else {
 
-            } catch (ShopGunError e) {
+                request.addEvent("non-recoverable-error");
+                if (!retry(request, response.error, networkResponse)) {
+                    postError(request, response);
+                }
 
-                request.addEvent("network-error");
-                mDelivery.postResponse(request, Response.fromError(e));
+            }
+
+        }
+
+    }
+
+    /**
+     * Parses a response on the parse executor.
+     */
+    private class ParseTask implements Runnable {
 
+        private final Request<?> mRequest;
+        private final NetworkResponse mNetworkResponse;
+
+        ParseTask(Request<?> request, NetworkResponse networkResponse) {
+            mRequest = request;
+            mNetworkResponse = networkResponse;
+        }
+
+        public void run() {
+            if (mRequest.isCanceled()) {
+                mRequest.finish("parser-cancelled-on-received");
+                return;
             }
+            handleNetworkResponse(mRequest, mNetworkResponse);
+        }
+
+    }
+
+    /**
+     * Perform the request, and report the outcome to the {@link CircuitBreaker}.
+     */
+    private NetworkResponse performRequest(Request<?> request, String circuit) throws ShopGunError {
+        CircuitBreaker breaker = mRequestQueue.getCircuitBreaker();
+        NetworkResponse networkResponse;
+        try {
+            networkResponse = mNetwork.performRequest(request);
+        } catch (ShopGunError e) {
+            if (request.isCanceled() || request.isDeadlineExceeded()) {
+                // Aborted by the user, or by the deadline timer, this says nothing about the API
+                breaker.onAbort(circuit);
+            } else if (!NetworkUtils.isServerSideFailure(e) || !mShopGun.isOnline()) {
+                // The device is offline, or failed on its own, don't open the circuit for a healthy API
+                breaker.onAbort(circuit);
+            } else {
+                breaker.onFailure(circuit);
+            }
+            throw e;
+        }
+        if (NetworkUtils.isTransientError(networkResponse.statusCode)) {
+            breaker.onFailure(circuit);
+        } else {
+            breaker.onSuccess(circuit);
+        }
+        return networkResponse;
+    }
+
+    /**
+     * Schedule the request to be performed again, if its {@link RetryPolicy} allows it.
+     * The dispatcher doesn't wait, the request is added to the queue again when the delay has passed.
+     * @return {@code true} if the request will be retried, else {@code false}
+     */
+    private boolean retry(Request<?> request, ShopGunError error, NetworkResponse networkResponse) {
+
+        if (request.isCanceled()) {
+            return false;
+        }
+
+        RetryPolicy policy = request.getRetryPolicy();
+        int statusCode = networkResponse == null ? 0 : networkResponse.statusCode;
+        if (!policy.shouldRetry(request, error, statusCode)) {
+            return false;
         }
+
+        long retryAfter = networkResponse == null ? -1 : HeaderUtils.getRetryAfter(networkResponse.headers);
+        long delay = policy.getDelay(request.getRetryCount(), retryAfter);
+        if (delay < 0 || delay >= request.getRemainingTime()) {
+            return false;
+        }
+
+        request.incrementRetryCount();
+        request.addEvent(String.format(Locale.US, "retry-%d-in-%dms", request.getRetryCount(), delay));
+        mRequestQueue.retry(request, delay);
+        return true;
+
+    }
+
+    private void postError(Request<?> request, Response<?> response) {
+        NetworkUtils.postError(mDelivery, request, response);
     }
 
     /**
@@ -178,32 +368,89 @@ public class NetworkDispatcher extends Thread {
         boolean newSession = (request.getMethod() == Method.POST && request.getUrl().contains(Endpoint.SESSIONS));
 
         if (!newSession) {
+            // The signature is computed once per token, by the SessionManager
+            request.setHeaders(mShopGun.getSessionManager().getSignedHeaders().getHeaders());
+        }
 
-            Map<String, String> headers = new HashMap<String, String>();
-            String token = mShopGun.getSessionManager().getSession().getToken();
-            headers.put(HeaderUtils.X_TOKEN, token);
-            String sha256 = HashUtils.sha256(mShopGun.getApiSecret() + token);
-            headers.put(HeaderUtils.X_SIGNATURE, sha256);
-            request.setHeaders(headers);
-
+        Cache.Item stale = request.getStaleCacheItem();
+        if (stale != null) {
+            if (stale.etag != null) {
+                request.getHeaders().put(HeaderUtils.IF_NONE_MATCH, stale.etag);
+            }
+            if (stale.lastModified != null) {
+                request.getHeaders().put(HeaderUtils.IF_MODIFIED_SINCE, stale.lastModified);
+            }
         }
 
     }
 
-    private void appendLogging(Request<?> req, NetworkResponse resp) {
+    private boolean isNotModified(Request<?> request, NetworkResponse response) {
+        return response.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && request.getStaleCacheItem() != null;
+    }
 
-        try {
+    /**
+     * The API have confirmed that the stale cache item is still valid. Refresh the time to live
+     * of the item, and any items it refers to, and build the response from cache.
+     * @param request The request being revalidated
+     * @param networkResponse A 304 response
+     * @return A response from cache, or {@code null} if the cache no longer has the complete response
+     */
+    private Response<?> revalidate(Request<?> request, NetworkResponse networkResponse) {
+
+        request.addEvent("cache-item-not-modified");
+
+        long ttl = request.getCacheTTL();
+        Cache.Item item = request.getStaleCacheItem().refresh(ttl);
+        String etag = HeaderUtils.getHeader(networkResponse.headers, HeaderUtils.ETAG);
+        if (etag != null) {
+            item.etag = etag;
+        }
+        String lastModified = HeaderUtils.getHeader(networkResponse.headers, HeaderUtils.LAST_MODIFIED);
+        if (lastModified != null) {
+            item.lastModified = lastModified;
+        }
+
+        Map<String, Cache.Item> refreshed = new HashMap<String, Cache.Item>();
+        refreshed.put(request.getCacheKey(), item);
 
-            // Server Response
-            JSONObject r = new JSONObject();
-            r.put("statuscode", resp.statusCode);
-            if (resp.headers != null) {
-                r.put("headers", new JSONObject(resp.headers));
+        // List responses are cached as a list of keys, those items must be refreshed too
+        if (item.object instanceof List) {
+            for (Object key : (List<?>) item.object) {
+                if (key instanceof String) {
+                    Cache.Item ci = NetworkUtils.peek(mCache, (String) key);
+                    if (ci != null) {
+                        refreshed.put((String) key, ci.refresh(ttl));
+                    }
+                }
             }
-            req.getNetworkLog().put("response", r);
+        }
+
+        mCache.put(request, Response.fromSuccess(null, refreshed));
+        return request.parseCache(mCache);
+
+    }
+
+    /**
+     * Store the validators of a successful response on the cache item for the request url,
+     * so the item can be revalidated once it expires.
+     */
+    private void applyValidators(Request<?> request, Response<?> response, Map<String, String> headers) {
+
+        if (response.cache == null || request.isPartialResponse()) {
+            // The validators of a partial response only apply to the ids that was fetched
+            return;
+        }
+
+        String etag = HeaderUtils.getHeader(headers, HeaderUtils.ETAG);
+        String lastModified = HeaderUtils.getHeader(headers, HeaderUtils.LAST_MODIFIED);
+        if (etag == null && lastModified == null) {
+            return;
+        }
 
-        } catch (JSONException e) {
-            SgnLog.e(TAG, "", e);
+        Cache.Item item = response.cache.get(request.getCacheKey());
+        if (item != null) {
+            item.etag = etag;
+            item.lastModified = lastModified;
         }
 
     }
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.utils.Utils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Date;
+
+/**
+ * A fixed size log of the most recent requests performed by a {@link RequestQueue}.
+ *
+ * <p>The log is disabled by default, and can be enabled at runtime with {@link #setEnabled(boolean)}.
+ * When enabled, a small summary of each finished request is recorded into a ring buffer of
+ * pre-allocated entries, and the summaries are only converted to JSON when the log is read.
+ * When disabled, recording a request costs a single volatile read.</p>
+ */
+public class NetworkLog {
+
+    public static final String TAG = Constants.getTag(NetworkLog.class);
+
+    /** Default number of requests to keep in the log */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Entry[] mEntries;
+    private int mNext = 0;
+    private int mCount = 0;
+    private volatile boolean mEnabled = false;
+
+    public NetworkLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new log
+     * @param capacity The max number of requests to keep
+     */
+    public NetworkLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        mEntries = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mEntries[i] = new Entry();
+        }
+    }
+
+    /**
+     * Enable or disable the log. Disabling the log doesn't clear it.
+     * @param enabled {@code true} to record requests, else {@code false}
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Record a finished request, if the log is enabled.
+     * @param r A finished request
+     * @param duration The duration of the request in milliseconds
+     */
+    void record(Request<?> r, long duration) {
+
+        if (!mEnabled) {
+            return;
+        }
+
+        NetworkResponse response = r.getNetworkResponse();
+        synchronized (mEntries) {
+            Entry e = mEntries[mNext];
+            e.time = r.getQueueTime();
+            e.duration = duration;
+            e.method = r.getMethod();
+            e.url = r.getCacheKey();
+            e.statusCode = response == null ? 0 : response.statusCode;
+            e.cacheHit = r.isCacheHit();
+            e.canceled = r.isCanceled();
+            mNext = (mNext + 1) % mEntries.length;
+            if (mCount < mEntries.length) {
+                mCount++;
+            }
+        }
+
+    }
+
+    /**
+     * Get the number of requests in the log
+     * @return A count
+     */
+    public int size() {
+        synchronized (mEntries) {
+            return mCount;
+        }
+    }
+
+    public void clear() {
+        synchronized (mEntries) {
+            for (Entry e : mEntries) {
+                e.method = null;
+                e.url = null;
+            }
+            mNext = 0;
+            mCount = 0;
+        }
+    }
+
+    /**
+     * Convert the log to JSON, the oldest request first.
+     * @return A {@link JSONArray} of requests
+     */
+    public JSONArray toJSON() {
+
+        JSONArray array = new JSONArray();
+        synchronized (mEntries) {
+            int first = (mNext - mCount + mEntries.length) % mEntries.length;
+            for (int i = 0; i < mCount; i++) {
+                Entry e = mEntries[(first + i) % mEntries.length];
+                try {
+                    JSONObject o = new JSONObject();
+                    o.put("time", Utils.dateToString(new Date(e.time)));
+                    o.put("method", String.valueOf(e.method));
+                    o.put("url", e.url);
+                    o.put("statuscode", e.statusCode);
+                    o.put("duration", e.duration);
+                    o.put("cache-hit", e.cacheHit);
+                    o.put("canceled", e.canceled);
+                    array.put(o);
+                } catch (JSONException ex) {
+                    SgnLog.e(TAG, "", ex);
+                }
+            }
+        }
+        return array;
+
+    }
+
+    private static class Entry {
+        long time;
+        long duration;
+        Request.Method method;
+        String url;
+        int statusCode;
+        boolean cacheHit;
+        boolean canceled;
+    }
+
+}
@@ -29,6 +29,9 @@ public class NetworkResponse {
     /** Response headers. */
     public final Map<String, String> headers;
 
+    /** Whether the body have been streamed to a {@link StreamingRequest}, in that case data is empty. */
+    public final boolean streamed;
+
     /**
      * Creates a new network response. From data received from a data source
      * @param statusCode the HTTP status code
@@ -36,9 +39,21 @@ public class NetworkResponse {
      * @param headers Headers returned with this response, or null for none
      */
     public NetworkResponse(int statusCode, byte[] data, Map<String, String> headers) {
+        this(statusCode, data, headers, false);
+    }
+
+    /**
+     * Creates a new network response. From data received from a data source
+     * @param statusCode the HTTP status code
+     * @param data Response body
+     * @param headers Headers returned with this response, or null for none
+     * @param streamed {@code true} if the body have been consumed by a {@link StreamingRequest}
+     */
+    public NetworkResponse(int statusCode, byte[] data, Map<String, String> headers, boolean streamed) {
         this.statusCode = statusCode;
         this.data = data;
         this.headers = headers;
+        this.streamed = streamed;
     }
 
 }
@@ -16,9 +16,19 @@
 
 package com.shopgun.android.sdk.network;
 
+import android.os.Build;
+
 import com.shopgun.android.sdk.SgnLocation;
 import com.shopgun.android.sdk.api.Parameters;
+import com.shopgun.android.sdk.utils.Utils;
+
+import org.apache.http.NoHttpResponseException;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.Arrays;
 import java.util.Map;
 
 public class NetworkUtils {
@@ -99,5 +109,120 @@ public class NetworkUtils {
         return l;
     }
 
+    /**
+     * Determine if the response body to a request, should be streamed to the request,
+     * rather than read into memory. Only successful responses are streamed, and it requires
+     * {@link android.util.JsonReader} which is available from Honeycomb.
+     * @param request A request
+     * @param statusCode The HTTP status code of the response
+     * @return {@code true} if the body should be handed to {@link StreamingRequest#parseNetworkStream(java.io.InputStream, String)}
+     */
+    public static boolean isStreamable(Request<?> request, int statusCode) {
+        return request instanceof StreamingRequest &&
+                Utils.isSuccess(statusCode) &&
+                statusCode != 304 &&
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+    }
+
+    /**
+     * Determine if a response should be added to a {@link Cache}. Only successful responses where the
+     * {@link Request#getMethod()} is a {@link com.shopgun.android.sdk.network.Request.Method#GET},
+     * and that didn't originate from the cache, may be cached.
+     * @param request The request performed
+     * @param response The response to the request
+     * @return {@code true} if the response cache items should be added to the cache
+     */
+    public static boolean shouldCache(Request<?> request, Response<?> response) {
+        return request.getMethod() == Request.Method.GET &&
+                request.isCacheable() &&
+                !request.isCacheHit() &&
+                response.cache != null;
+    }
+
+    /**
+     * Post an error response. If a stale response have already been delivered, the request is
+     * finished instead, and the stale response stands.
+     * @param delivery The delivery to post to
+     * @param request A request
+     * @param response An error response
+     */
+    static void postError(Delivery delivery, Request<?> request, Response<?> response) {
+        if (request.isStaleResponseDelivered() && !request.isFinalResponseRequired()) {
+            request.finish("stale-response-refresh-failed");
+        } else {
+            delivery.postResponse(request, response);
+        }
+    }
+
+    /**
+     * Determine if an HTTP status code indicates a transient problem, where the same request
+     * may succeed if it's performed again later.
+     * @param statusCode An HTTP status code
+     * @return {@code true} for request timeouts, rate limiting and server errors, else {@code false}
+     */
+    public static boolean isTransientError(int statusCode) {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * Determine if an error thrown by a {@link Network} was caused by the server, i.e. it timed out, refused
+     * the connection, or closed it without responding. Errors on the device, e.g. an unresolved host
+     * while offline, or an SSL error, say nothing about the health of the API.
+     * @param error An error from {@link Network#performRequest(Request)}
+     * @return {@code true} if the error should count against the API, else {@code false}
+     */
+    public static boolean isServerSideFailure(ShopGunError error) {
+        Throwable cause = error.getCause();
+        return cause instanceof InterruptedIOException
+                || cause instanceof ConnectException
+                || cause instanceof NoHttpResponseException;
+    }
+
+    /**
+     * Determine if the cache items of a fresh response, have the same content as the items
+     * currently in the {@link Cache}. This is used to decide if a fresh response must be delivered,
+     * after a stale response have been delivered from cache.
+     * @param cache The cache holding the stale items
+     * @param response A fresh response
+     * @return {@code true} if all items are present in the cache, with the same content, else {@code false}
+     */
+    public static boolean isCacheContentUnchanged(Cache cache, Response<?> response) {
+
+        if (response.cache == null || response.cache.isEmpty()) {
+            return false;
+        }
+
+        for (Map.Entry<String, Cache.Item> e : response.cache.entrySet()) {
+            Cache.Item stale = peek(cache, e.getKey());
+            if (stale == null || !isSameContent(stale.object, e.getValue().object)) {
+                return false;
+            }
+        }
+        return true;
+
+    }
+
+    /**
+     * Get an item from the cache, even if it has expired. This requires a {@link PeekableCache}.
+     * @param cache A cache
+     * @param key A key
+     * @return A {@link Cache.Item} if found, or {@code null} if not found or the cache can't peek
+     */
+    public static Cache.Item peek(Cache cache, String key) {
+        return cache instanceof PeekableCache ? ((PeekableCache) cache).peek(key) : null;
+    }
+
+    private static boolean isSameContent(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        } else if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        } else if ((a instanceof JSONObject && b instanceof JSONObject) ||
+                (a instanceof JSONArray && b instanceof JSONArray)) {
+            // org.json doesn't implement equals, but keeps the order of the parsed keys
+            return a.toString().equals(b.toString());
+        }
+        return a.equals(b);
+    }
 
 }
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network;
+
+import com.shopgun.android.sdk.utils.Utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The query parameters of a {@link Request}. The map counts modifications, so the
+ * {@link Request#getCacheKey() cache key} only needs to be rebuilt when the parameters change.
+ *
+ * <p>The views of the map allow modification, so handing out a view is counted as a modification.</p>
+ */
+class ParameterMap extends HashMap<String, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private int mModCount = 0;
+
+    int getModCount() {
+        return mModCount;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        mModCount++;
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> map) {
+        mModCount++;
+        super.putAll(map);
+    }
+
+    @Override
+    public String remove(Object key) {
+        mModCount++;
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        mModCount++;
+        super.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        mModCount++;
+        return super.keySet();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        mModCount++;
+        return super.entrySet();
+    }
+
+    @Override
+    public Collection<String> values() {
+        mModCount++;
+        return super.values();
+    }
+
+    /**
+     * Build the query string, with the keys in alphabetical order (for better cache performance).
+     * @param encoding The encoding to use
+     * @return A query string
+     */
+    String toQueryString(String encoding) {
+
+        String[] keys = super.keySet().toArray(new String[size()]);
+        Arrays.sort(keys);
+
+        StringBuilder sb = new StringBuilder(keys.length * 24);
+        for (String key : keys) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            String value = get(key);
+            Utils.appendEncoded(sb, key, encoding);
+            sb.append('=');
+            Utils.appendEncoded(sb, value == null ? "" : value, encoding);
+        }
+        return sb.toString();
+
+    }
+
+}
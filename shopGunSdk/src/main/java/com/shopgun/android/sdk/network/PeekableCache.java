@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network;
+
+/**
+ * A {@link Cache} that can return items after they have expired.
+ *
+ * <p>This is optional. Expired items are needed to revalidate a response with the API (see
+ * {@link Cache.Item#hasValidators()}), and for {@link Request#setStaleWhileRevalidate(boolean)}.
+ * Without it, an expired item is simply a cache miss.</p>
+ */
+public interface PeekableCache extends Cache {
+
+    /**
+     * Get a {@link com.shopgun.android.sdk.network.Cache.Item} from this cache, even if it has expired.
+     * <p>Expired items may still be revalidated with the API, see {@link Item#hasValidators()}.</p>
+     * @param key A key
+     * @return A {@link com.shopgun.android.sdk.network.Cache.Item} if found, else {@code null}
+     */
+    public Cache.Item peek(String key);
+
+}
@@ -16,8 +16,9 @@
 
 package com.shopgun.android.sdk.network;
 
+import android.os.SystemClock;
+
 import com.shopgun.android.sdk.Constants;
-import com.shopgun.android.sdk.log.Event;
 import com.shopgun.android.sdk.log.EventLog;
 import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.network.Response.Listener;
@@ -26,6 +27,7 @@ import com.shopgun.android.sdk.utils.Utils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -41,8 +43,10 @@ public abstract class Request<T> implements Comparable<Request<T>> {
     /** Default cache time in milliseconds */
     protected static final long DEFAULT_CACHE_TTL = TimeUnit.MINUTES.toMillis(3);
 
+    private static final int STAGE_COUNT = Stage.values().length;
+
     /** Default connection timeout, this is for both connection and socket */
-    private static final int CONNECTION_TIME_OUT = (int) TimeUnit.SECONDS.toMillis(20);
+    public static final int CONNECTION_TIME_OUT = (int) TimeUnit.SECONDS.toMillis(20);
 
     /** Listener interface, for responses */
     private final Listener<T> mListener;
@@ -51,7 +55,14 @@ public abstract class Request<T> implements Comparable<Request<T>> {
     private final Method mMethod;
     /** Log of this request */
     private final EventLog mEventLog;
-    private final JSONObject mNetworkLog;
+    /** Time this request was added to the {@link RequestQueue} */
+    private long mQueueTime;
+    /** Time each {@link Stage} was reached, see {@link #markStage(Stage)} */
+    private final long[] mStageTimes = new long[STAGE_COUNT];
+    private long mBytesIn = 0;
+    private long mBytesOut = 0;
+    /** The response from the network, kept for the network log */
+    private NetworkResponse mNetworkResponse;
     /** URL of this request. */
     private String mUrl;
     /** Headers to be used in this request */
@@ -61,7 +72,12 @@ public abstract class Request<T> implements Comparable<Request<T>> {
     /** Item for containing cache items */
     private Map<String, Cache.Item> mCache = new HashMap<String, Cache.Item>();
     /** Parameters to add to request */
-    private Map<String, String> mParameters = new HashMap<String, String>();
+    private ParameterMap mParameters = new ParameterMap();
+    /** The memoized cache key, see {@link #getCacheKey()} */
+    private String mCacheKey;
+    /** The url, and parameter modification count, the cache key was built from */
+    private String mCacheKeyUrl;
+    private int mCacheKeyModCount;
     /** Should this request use location in the query */
     private boolean mUseLocation = true;
     /** If true Request will return data from cache if exists */
@@ -70,10 +86,36 @@ public abstract class Request<T> implements Comparable<Request<T>> {
     private boolean mIsCacheable = true;
     /** Whether or not this request has been canceled. */
     private boolean mCanceled = false;
+    /** Aborts the network activity of this request, while it's in flight */
+    private Abortable mAbortable;
     /** Indication if the request is finished */
     private boolean mFinished = false;
     private int mTimeout = CONNECTION_TIME_OUT;
+    /** The time this request must be answered by, in {@link SystemClock#elapsedRealtime()} millis, or 0 */
+    private volatile long mDeadline = 0;
+    /** Indication that the {@link RequestQueue} has a timer running for the deadline */
+    private boolean mDeadlineScheduled = false;
     private boolean mCacheHit = false;
+    /** Indication that the response from the network have been added to the cache */
+    private boolean mResponseCached = false;
+    /** An expired cache item, that this request will try to revalidate */
+    private Cache.Item mStaleCacheItem;
+    /** If true an expired response may be delivered from cache, while the request is refreshed */
+    private boolean mStaleWhileRevalidate = false;
+    /** Indication that an expired response has been delivered, and the request is refreshing it */
+    private boolean mStaleResponseDelivered = false;
+    /** Indication that the response currently being delivered is an expired response from cache */
+    private boolean mStaleResponse = false;
+    /** The key this request was coalesced by in the {@link RequestQueue} */
+    private String mCoalescingKey;
+    /** The kind of traffic this request is, used for scheduling network requests */
+    private TrafficClass mTrafficClass = TrafficClass.INTERACTIVE;
+    /** The traffic class this request was queued by in the {@link TrafficScheduler} */
+    private TrafficClass mScheduledClass;
+    /** Decides if failed requests are retried */
+    private RetryPolicy mRetryPolicy = RetryPolicy.DEFAULT;
+    /** The number of times this request have been retried */
+    private int mRetryCount = 0;
 
     private RequestDebugger mDebugger;
 
@@ -102,7 +144,6 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         mUrl = url;
         mListener = listener;
         mEventLog = new EventLog();
-        mNetworkLog = new JSONObject();
     }
 
     protected void resetstate() {
@@ -110,6 +151,10 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         mFinished = false;
         mCanceled = false;
         mCacheHit = false;
+        mResponseCached = false;
+        mStaleCacheItem = null;
+        mStaleResponseDelivered = false;
+        mStaleResponse = false;
     }
 
     /**
@@ -128,9 +173,60 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return mEventLog;
     }
 
-    /** Mark this request as canceled.  No callback will be delivered. */
-    public synchronized void cancel() {
-        mCanceled = true;
+    /**
+     * Mark this request as canceled.  No callback will be delivered.
+     * If the request is in flight, the connection is aborted, freeing the dispatcher performing it.
+     */
+    public void cancel() {
+        Abortable abortable;
+        RequestQueue queue;
+        synchronized (this) {
+            mCanceled = true;
+            abortable = mAbortable;
+            mAbortable = null;
+            queue = mRequestQueue;
+        }
+        if (abortable != null) {
+            addEvent("aborting-network-request");
+            if (queue == null) {
+                abortable.abort();
+            } else {
+                // Closing a connection may perform I/O, so get off the calling thread
+                queue.abort(abortable);
+            }
+        }
+    }
+
+    /**
+     * Abort the network activity of this request, without cancelling it, e.g. when the deadline is reached.
+     */
+    void abortNetworkRequest() {
+        Abortable abortable;
+        synchronized (this) {
+            abortable = mAbortable;
+            mAbortable = null;
+        }
+        if (abortable != null) {
+            addEvent("aborting-network-request");
+            abortable.abort();
+        }
+    }
+
+    /**
+     * Set the hook that aborts the network activity of this request, if it's cancelled.
+     * {@link Network} implementations set this while performing the request, and clear it
+     * when done. If the request is already cancelled, the hook is called right away.
+     * @param abortable An {@link Abortable}, or {@code null} to clear it
+     */
+    public void setAbortable(Abortable abortable) {
+        boolean abort;
+        synchronized (this) {
+            abort = mCanceled && abortable != null;
+            mAbortable = abort ? null : abortable;
+        }
+        if (abort) {
+            abortable.abort();
+        }
     }
 
     /**
@@ -163,15 +259,13 @@ public abstract class Request<T> implements Comparable<Request<T>> {
 
         addEvent(reason);
 
-        try {
-            mNetworkLog.put("duration", mEventLog.getTotalDuration());
-        } catch (JSONException e) {
-            SgnLog.e(TAG, "", e);
+        if (mSaveNetworkLog && mRequestQueue != null) {
+            // Append the request summary to the network log, if it's enabled
+            mRequestQueue.getNetworkLog().record(this, mEventLog.getTotalDuration());
         }
 
-        if (mSaveNetworkLog) {
-            // Append the request summary to the debugging log
-            SgnLog.getLogger().getLog().add(Event.TYPE_REQUEST, mNetworkLog);
+        if (!mFinished && mRequestQueue != null) {
+            mRequestQueue.getMetrics().record(this);
         }
 
         mFinished = true;
@@ -186,15 +280,101 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return Request.this;
     }
 
+    /**
+     * Get a summary of this request, and the response from the network, for debugging purposes.
+     * <p>The summary is built on every call, and should only be used while debugging.</p>
+     * @return A summary of this request
+     */
     public JSONObject getNetworkLog() {
-        return mNetworkLog;
+
+        JSONObject log = new JSONObject();
+        try {
+            log.put("method", mMethod.toString());
+            log.put("url", getCacheKey());
+            log.put("Content-Type", getBodyContentType());
+            log.put("headers", new JSONObject(mHeaders));
+            log.put("time", Utils.dateToString(new Date(mQueueTime)));
+            NetworkResponse resp = mNetworkResponse;
+            if (resp != null) {
+                JSONObject r = new JSONObject();
+                r.put("statuscode", resp.statusCode);
+                if (resp.headers != null) {
+                    r.put("headers", new JSONObject(resp.headers));
+                }
+                log.put("response", r);
+            }
+            log.put("duration", mEventLog.getTotalDuration());
+        } catch (JSONException e) {
+            SgnLog.e(TAG, "", e);
+        }
+        return log;
+
+    }
+
+    long getQueueTime() {
+        return mQueueTime;
+    }
+
+    void setQueueTime(long time) {
+        mQueueTime = time;
+    }
+
+    NetworkResponse getNetworkResponse() {
+        return mNetworkResponse;
+    }
+
+    void setNetworkResponse(NetworkResponse response) {
+        mNetworkResponse = response;
+    }
+
+    boolean isResponseCached() {
+        return mResponseCached;
+    }
+
+    void setResponseCached(boolean responseCached) {
+        mResponseCached = responseCached;
     }
 
     public void stats(int in, int out) {
+        mBytesIn += in;
+        mBytesOut += out;
         mRequestQueue.dataIn += in;
         mRequestQueue.dataOut += out;
     }
 
+    /**
+     * Get the number of bytes received by this request
+     * @return A number of bytes
+     */
+    public long getBytesIn() {
+        return mBytesIn;
+    }
+
+    /**
+     * Get the number of bytes sent by this request
+     * @return A number of bytes
+     */
+    public long getBytesOut() {
+        return mBytesOut;
+    }
+
+    /**
+     * Record the time this request reached a stage of the pipeline.
+     * @param stage A stage
+     */
+    public void markStage(Stage stage) {
+        mStageTimes[stage.ordinal()] = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Get the time this request reached a stage of the pipeline.
+     * @param stage A stage
+     * @return The time in {@link SystemClock#elapsedRealtime()} millis, or 0 if the stage haven't been reached
+     */
+    public long getStageTime(Stage stage) {
+        return mStageTimes[stage.ordinal()];
+    }
+
     /**
      * Get the connection timeout for this request.
      * <p>The timeout will be the same for connecting, and for reading data</p>
@@ -215,6 +395,74 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return this;
     }
 
+    /**
+     * Get the timeout to use for the next connection. This is the {@link #getTimeOut() timeout}
+     * of the request, or the time left until the {@link #getDeadline() deadline} if that is shorter.
+     * @return The timeout in milliseconds, at least 1
+     */
+    public int getConnectionTimeOut() {
+        long remaining = getRemainingTime();
+        return (int) Math.max(1, Math.min(mTimeout, remaining));
+    }
+
+    /**
+     * Get the time this request must be answered by. Unlike the {@link #getTimeOut() timeout}
+     * the deadline covers the time spent in queues, following redirects, retrying, and in the
+     * requests performed by a {@link com.shopgun.android.sdk.requests.LoaderRequest LoaderRequest}.
+     * @return The deadline in {@link SystemClock#elapsedRealtime()} millis, or 0 if there is no deadline
+     */
+    public long getDeadline() {
+        return mDeadline;
+    }
+
+    /**
+     * Set the time this request must be answered by. If the deadline is reached the request fails
+     * with {@link ShopGunError.Code#DEADLINE_EXCEEDED}.
+     * @param deadline A deadline in {@link SystemClock#elapsedRealtime()} millis, or 0 for no deadline
+     * @return this object
+     */
+    public Request setDeadline(long deadline) {
+        mDeadline = deadline;
+        return this;
+    }
+
+    /**
+     * Set a deadline, the given time from now. See {@link #setDeadline(long)}.
+     * @param timeout The max time to wait for an answer, in milliseconds
+     * @return this object
+     */
+    public Request setTotalTimeOut(long timeout) {
+        return setDeadline(SystemClock.elapsedRealtime() + timeout);
+    }
+
+    /**
+     * Get the time left until the deadline.
+     * @return The remaining time in milliseconds, {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long getRemainingTime() {
+        long deadline = mDeadline;
+        return deadline == 0 ? Long.MAX_VALUE : deadline - SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Check if the deadline of this request has passed.
+     * @return {@code true} if the deadline has passed, else {@code false}
+     */
+    public boolean isDeadlineExceeded() {
+        return getRemainingTime() <= 0;
+    }
+
+    /**
+     * Mark whether the {@link RequestQueue} has a timer running for the deadline of this request.
+     * @param scheduled {@code true} when a timer is started, {@code false} when it has fired
+     * @return The previous value
+     */
+    synchronized boolean setDeadlineScheduled(boolean scheduled) {
+        boolean previous = mDeadlineScheduled;
+        mDeadlineScheduled = scheduled;
+        return previous;
+    }
+
     /**
      * Returns a list of headers for this request.
      * @return A map of headers
@@ -306,6 +554,109 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return this;
     }
 
+    /**
+     * Get the expired {@link Cache.Item} that this request is revalidating with a conditional request.
+     * @return A {@link Cache.Item}, or {@code null}
+     */
+    public Cache.Item getStaleCacheItem() {
+        return mStaleCacheItem;
+    }
+
+    /**
+     * Set an expired {@link Cache.Item}, with validators, to revalidate with a conditional request.
+     * If the API responds with 304 Not Modified, the item is refreshed and delivered from cache.
+     * @param item A {@link Cache.Item}, or {@code null}
+     * @return this object
+     */
+    public Request setStaleCacheItem(Cache.Item item) {
+        mStaleCacheItem = item;
+        return this;
+    }
+
+    /**
+     * Returns true if this request may deliver an expired response from cache, while
+     * refreshing it from the API.
+     * @return {@code true} if stale-while-revalidate is enabled, else {@code false}
+     */
+    public boolean isStaleWhileRevalidate() {
+        return mStaleWhileRevalidate;
+    }
+
+    /**
+     * Enable stale-while-revalidate for this request.
+     * <p>If the response is in cache, but has expired, it's delivered immediately and flagged
+     * as stale (see {@link #isStaleResponse()}). The request is then refreshed from the API, and the
+     * response is delivered a second time, only if the content has changed. If the content is unchanged,
+     * or the refresh fails, the request finishes without another delivery.</p>
+     * <p>An id filtered list is refreshed in full, rather than only fetching the ids missing in cache.
+     * {@link com.shopgun.android.sdk.requests.ModelRequest ModelRequest} and
+     * {@link com.shopgun.android.sdk.requests.ModelListRequest ModelListRequest} deliver the expired
+     * response as an intermediate result, and always deliver the refreshed response.
+     * {@link com.shopgun.android.sdk.requests.LoaderRequest LoaderRequest} is assembled from several
+     * requests, and doesn't support stale-while-revalidate.</p>
+     * @param staleWhileRevalidate {@code true} to enable, else {@code false}
+     * @return this object
+     */
+    public Request setStaleWhileRevalidate(boolean staleWhileRevalidate) {
+        mStaleWhileRevalidate = staleWhileRevalidate;
+        return this;
+    }
+
+    /**
+     * Returns true if the request must get a final delivery after an expired response have been delivered,
+     * even if the refreshed content is unchanged, or the refresh fails. This is the case for requests
+     * that deliver the expired response as an intermediate result.
+     * @return {@code true} if a final response is required, else {@code false}
+     */
+    protected boolean isFinalResponseRequired() {
+        return false;
+    }
+
+    /**
+     * Returns true if the response currently being delivered is an expired response from cache,
+     * and a fresh response may follow. This is only valid during delivery.
+     * @return {@code true} if the response is stale, else {@code false}
+     */
+    public boolean isStaleResponse() {
+        return mStaleResponse;
+    }
+
+    /**
+     * Set whether the response being delivered is stale, this is done by the {@link Delivery}.
+     * @param staleResponse {@code true} if the response is stale, else {@code false}
+     * @return this object
+     */
+    public Request setStaleResponse(boolean staleResponse) {
+        mStaleResponse = staleResponse;
+        return this;
+    }
+
+    String getCoalescingKey() {
+        return mCoalescingKey;
+    }
+
+    void setCoalescingKey(String key) {
+        mCoalescingKey = key;
+    }
+
+    /**
+     * Returns true if the last response from the network was only fetched for a part of this request,
+     * e.g. the items of a filtered list that was missing in cache. The validators of such a response,
+     * doesn't apply to the request.
+     * @return {@code true} if the response is partial, else {@code false}
+     */
+    protected boolean isPartialResponse() {
+        return false;
+    }
+
+    boolean isStaleResponseDelivered() {
+        return mStaleResponseDelivered;
+    }
+
+    void setStaleResponseDelivered(boolean delivered) {
+        mStaleResponseDelivered = delivered;
+    }
+
     /**
      * The time-to-live for a given Cache.Item this request may create
      * @return request time-to-live in milliseconds
@@ -405,6 +756,30 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return Request.this;
     }
 
+    /**
+     * Get the canonical key for this request, the url and the query parameters in alphabetical order.
+     * e.g.: https://api.etilbudsavis.dk/v2/catalogs?order_by=popular
+     * <p>The key is used for caching, and to identify identical requests. It's built once, and
+     * rebuilt only if the url or the parameters have changed.</p>
+     * @return A key, or {@code null} if the request doesn't have an url
+     */
+    public synchronized String getCacheKey() {
+
+        String url = mUrl;
+        if (url == null) {
+            return null;
+        }
+
+        int modCount = mParameters.getModCount();
+        if (mCacheKey == null || !url.equals(mCacheKeyUrl) || modCount != mCacheKeyModCount) {
+            mCacheKey = mParameters.isEmpty() ? url : url + "?" + mParameters.toQueryString(getParamsEncoding());
+            mCacheKeyUrl = url;
+            mCacheKeyModCount = modCount;
+        }
+        return mCacheKey;
+
+    }
+
     /**
      * Get the query parameters that will be used to perform this query.<br>
      * @return the query parameters
@@ -436,6 +811,71 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         return Priority.MEDIUM;
     }
 
+    /**
+     * Get the kind of traffic this request is.
+     * @return A {@link TrafficClass}, {@link TrafficClass#INTERACTIVE} by default
+     */
+    public TrafficClass getTrafficClass() {
+        return mTrafficClass;
+    }
+
+    /**
+     * Set the kind of traffic this request is. Requests are dispatched to the network by traffic class,
+     * so background traffic doesn't delay requests a user is waiting for,
+     * see {@link TrafficScheduler}.
+     * @param trafficClass A {@link TrafficClass}
+     * @return This object
+     */
+    public Request setTrafficClass(TrafficClass trafficClass) {
+        if (trafficClass == null) {
+            throw new IllegalArgumentException("TrafficClass must not be null");
+        }
+        mTrafficClass = trafficClass;
+        return this;
+    }
+
+    /**
+     * Get the policy deciding if this request is retried, if it fails.
+     * @return A {@link RetryPolicy}, {@link RetryPolicy#DEFAULT} by default
+     */
+    public RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    /**
+     * Set the policy deciding if this request is retried, if it fails.
+     * Use {@link RetryPolicy#NONE} to never retry.
+     * @param retryPolicy A {@link RetryPolicy}
+     * @return This object
+     */
+    public Request setRetryPolicy(RetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("RetryPolicy must not be null");
+        }
+        mRetryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Get the number of times this request have been retried.
+     * @return The retry count
+     */
+    public int getRetryCount() {
+        return mRetryCount;
+    }
+
+    void incrementRetryCount() {
+        mRetryCount++;
+    }
+
+    TrafficClass getScheduledClass() {
+        return mScheduledClass;
+    }
+
+    void setScheduledClass(TrafficClass trafficClass) {
+        mScheduledClass = trafficClass;
+    }
+
     /**
      * Get the sequence number that this request have been given.
      * The sequence number reflects the order of which the request was handed to the
@@ -538,7 +978,7 @@ public abstract class Request<T> implements Comparable<Request<T>> {
 
     /**
      * Use this method, to enable/disable saving summary to
-     * {@link RequestQueue#getLog() RequestQueue.getLogs()}.
+     * {@link RequestQueue#getNetworkLog() RequestQueue.getNetworkLog()}.
      * @param saveNetworkLog True to save logs to global log
      */
     public void setSaveNetworkLog(boolean saveNetworkLog) {
@@ -560,13 +1000,30 @@ public abstract class Request<T> implements Comparable<Request<T>> {
      */
     @Override
     public String toString() {
-        return mMethod.toString() + ": " + Utils.requestToUrlAndQueryString(this);
+        return mMethod.toString() + ": " + getCacheKey();
     }
 
     public enum Priority {
         LOW, MEDIUM, HIGH
     }
 
+    /** Aborts the network activity of a request, e.g. by closing its connection. */
+    public interface Abortable {
+        void abort();
+    }
+
+    /** Kinds of traffic, in the order they are served by the {@link TrafficScheduler}. */
+    public enum TrafficClass {
+        /** Requests a user is waiting for, e.g. loading a catalog */
+        INTERACTIVE,
+        /** Data that may be needed soon, but no one is waiting for yet */
+        PREFETCH,
+        /** Synchronization of user data, e.g. shopping lists */
+        SYNC,
+        /** Statistics, and other fire-and-forget reporting */
+        TELEMETRY
+    }
+
     /** Supported request methods. */
 //	public interface Method {
 //		int GET = 0;
@@ -579,4 +1036,20 @@ public abstract class Request<T> implements Comparable<Request<T>> {
         GET, POST, PUT, DELETE
     }
 
+    /** Stages of the request pipeline, timed by {@link #markStage(Stage)}. */
+    public enum Stage {
+        /** Added to the {@link RequestQueue} */
+        ENQUEUE,
+        /** Taken by the {@link CacheDispatcher} */
+        CACHE_TAKE,
+        /** Taken by a {@link NetworkDispatcher} */
+        NETWORK_START,
+        /** The response status and headers have been received */
+        FIRST_BYTE,
+        /** The response have been parsed */
+        PARSE_END,
+        /** The response is being delivered to the listener */
+        DELIVERY
+    }
+
 }
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of identical GET requests, so only one of them is dispatched at a time.
+ *
+ * <p>Requests are keyed by their {@link Request#getCacheKey() cache key}. The first request with a
+ * given key is the head, and is dispatched, later requests wait behind it. When the head finishes with
+ * a response in cache, all waiting requests are resumed, and will be answered from the cache. If the
+ * head didn't leave a response in cache, e.g. it was cancelled or failed, only the first waiting
+ * request is resumed, as the new head, and the rest keep waiting for it.</p>
+ */
+public class RequestCoalescer {
+
+    /**
+     * Requests waiting for a similar request to finish, keyed by url and query string.
+     * The first request in each list is the head, the rest are waiting for it.
+     */
+    private final Map<String, LinkedList<Request<?>>> mWaiting = new HashMap<String, LinkedList<Request<?>>>();
+
+    /**
+     * Add a request, if a similar request is already in flight the request is parked behind it.
+     * @param request A request
+     * @return {@code true} if the request should be dispatched, {@code false} if it's parked
+     */
+    public synchronized boolean park(Request<?> request) {
+
+        String key = request.getCacheKey();
+        LinkedList<Request<?>> waiting = mWaiting.get(key);
+        request.setCoalescingKey(key);
+
+        if (waiting == null) {
+            waiting = new LinkedList<Request<?>>();
+            waiting.add(request);
+            mWaiting.put(key, waiting);
+            return true;
+        } else if (waiting.getFirst() == request) {
+            // The head is being re-added, e.g. after a session error
+            return true;
+        }
+
+        request.addEvent("waiting-for-similar-request");
+        waiting.add(request);
+        return false;
+
+    }
+
+    /**
+     * Release the requests waiting for a request that has finished. Only the head releases requests.
+     * <p>Cancelled requests are released as they are found, so they can finish.</p>
+     * @param request A request that has finished
+     * @return The requests to dispatch, may be empty
+     */
+    public synchronized List<Request<?>> release(Request<?> request) {
+
+        // The url may have changed while in flight, so use the key it was parked by
+        String key = request.getCoalescingKey();
+        LinkedList<Request<?>> waiting = key == null ? null : mWaiting.get(key);
+        if (waiting == null || waiting.getFirst() != request) {
+            return Collections.emptyList();
+        }
+
+        waiting.removeFirst();
+        List<Request<?>> released = new ArrayList<Request<?>>();
+
+        if (request.isCacheHit() || request.isResponseCached()) {
+            // Everyone will be answered from cache
+            for (Request<?> r : waiting) {
+                r.addEvent("resuming-similar-request");
+                released.add(r);
+            }
+            waiting.clear();
+        } else {
+            // Nothing in cache, so promote a new head and let the rest wait for it
+            while (!waiting.isEmpty()) {
+                Request<?> r = waiting.getFirst();
+                released.add(r);
+                if (!r.isCanceled()) {
+                    r.addEvent("promoted-to-coalescing-head");
+                    break;
+                }
+                waiting.removeFirst();
+            }
+        }
+
+        if (waiting.isEmpty()) {
+            mWaiting.remove(key);
+        }
+        return released;
+
+    }
+
+    /**
+     * Remove a request that is waiting for a similar request. The head can't be removed this way.
+     * @param request A request
+     * @return {@code true} if the request was waiting, and have been removed, else {@code false}
+     */
+    public synchronized boolean remove(Request<?> request) {
+        String key = request.getCoalescingKey();
+        LinkedList<Request<?>> waiting = key == null ? null : mWaiting.get(key);
+        return waiting != null && waiting.getFirst() != request && waiting.remove(request);
+    }
+
+}
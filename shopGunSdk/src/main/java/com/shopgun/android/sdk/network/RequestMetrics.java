@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network;
+
+import android.os.SystemClock;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.network.Request.Stage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Latency, traffic and cache statistics for the requests performed by a {@link RequestQueue},
+ * grouped by endpoint family (e.g. {@code /v2/catalogs} for all catalog endpoints, see
+ * {@link com.shopgun.android.sdk.api.Endpoints}).
+ *
+ * <p>Each family uses a fixed amount of memory: latencies are counted in fixed buckets, and
+ * stage timings are kept as sums. The number of families is bounded, further families are
+ * counted as {@link #OTHER}.</p>
+ */
+public class RequestMetrics {
+
+    public static final String TAG = Constants.getTag(RequestMetrics.class);
+
+    /** The family of requests that doesn't fit any other family */
+    public static final String OTHER = "other";
+
+    private static final int MAX_FAMILIES = 32;
+
+    private static final String API_VERSION = "v2";
+
+    /** Upper bounds of the latency buckets in milliseconds, the last bucket is unbounded */
+    private static final long[] BUCKETS = {
+            5, 10, 20, 30, 50, 75, 100, 150, 200, 300, 400, 500, 750, 1000,
+            1500, 2000, 3000, 5000, 7500, 10000, 20000, 30000, 60000
+    };
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final Map<String, Histogram> mFamilies = new HashMap<String, Histogram>();
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Record a finished request.
+     * @param r A request
+     */
+    void record(Request<?> r) {
+
+        long enqueued = r.getStageTime(Stage.ENQUEUE);
+        if (enqueued == 0) {
+            // Never added to a RequestQueue
+            return;
+        }
+
+        long latency = SystemClock.elapsedRealtime() - enqueued;
+        String family = getEndpointFamily(r.getUrl());
+
+        synchronized (mFamilies) {
+            Histogram h = mFamilies.get(family);
+            if (h == null) {
+                if (mFamilies.size() >= MAX_FAMILIES) {
+                    family = OTHER;
+                    h = mFamilies.get(OTHER);
+                }
+                if (h == null) {
+                    h = new Histogram();
+                    mFamilies.put(family, h);
+                }
+            }
+            h.record(r, latency, enqueued);
+        }
+
+        for (Listener l : mListeners) {
+            l.onRequestFinished(r, family, latency);
+        }
+
+    }
+
+    /**
+     * Get a snapshot of the statistics for each endpoint family.
+     * @return A map of endpoint families, and their statistics
+     */
+    public Map<String, Snapshot> getSnapshot() {
+        Map<String, Snapshot> snapshot = new HashMap<String, Snapshot>();
+        synchronized (mFamilies) {
+            for (Map.Entry<String, Histogram> e : mFamilies.entrySet()) {
+                snapshot.put(e.getKey(), new Snapshot(e.getKey(), e.getValue()));
+            }
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Clear all statistics
+     */
+    public void reset() {
+        synchronized (mFamilies) {
+            mFamilies.clear();
+        }
+    }
+
+    public void addListener(Listener l) {
+        mListeners.addIfAbsent(l);
+    }
+
+    public void removeListener(Listener l) {
+        mListeners.remove(l);
+    }
+
+    /**
+     * Get the endpoint family of an url, this is the API version and the first path
+     * segment e.g. {@code /v2/offers} for {@code https://api.etilbudsavis.dk/v2/offers/1234?r_lat=55}.
+     * @param url An url, or a path
+     * @return An endpoint family
+     */
+    public static String getEndpointFamily(String url) {
+
+        if (url == null) {
+            return OTHER;
+        }
+
+        int start = url.indexOf("://");
+        start = start == -1 ? 0 : url.indexOf('/', start + 3);
+        if (start == -1) {
+            return OTHER;
+        }
+        int end = url.indexOf('?', start);
+        if (end == -1) {
+            end = url.length();
+        }
+
+        // Skip the leading slash, and find the first segment
+        int segStart = start + 1;
+        int segEnd = indexOfSlash(url, segStart, end);
+        if (segStart >= segEnd) {
+            return OTHER;
+        }
+        if (API_VERSION.equals(url.substring(segStart, segEnd))) {
+            if (segEnd + 1 >= end) {
+                return OTHER;
+            }
+            segEnd = indexOfSlash(url, segEnd + 1, end);
+        }
+        return url.substring(start, segEnd);
+
+    }
+
+    private static int indexOfSlash(String s, int from, int end) {
+        int i = s.indexOf('/', from);
+        return i == -1 || i > end ? end : i;
+    }
+
+    private static int bucketOf(long latency) {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (latency <= BUCKETS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS.length;
+    }
+
+    /**
+     * Callback for every finished request. This is called on the thread finishing the request,
+     * which may be the UI thread, so implementations must be fast.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a request has finished, the time of each stage is available
+         * from {@link Request#getStageTime(Stage)}.
+         * @param request The finished request
+         * @param endpoint The endpoint family of the request
+         * @param latency The time from the request was queued, until it finished in milliseconds
+         */
+        void onRequestFinished(Request<?> request, String endpoint, long latency);
+
+    }
+
+    private static class Histogram {
+
+        final long[] buckets = new long[BUCKETS.length + 1];
+        final long[] stageSums = new long[STAGES.length];
+        final long[] stageCounts = new long[STAGES.length];
+        long count;
+        long latencySum;
+        long bytesIn;
+        long bytesOut;
+        long cacheHits;
+
+        void record(Request<?> r, long latency, long enqueued) {
+            buckets[bucketOf(latency)]++;
+            count++;
+            latencySum += latency;
+            bytesIn += r.getBytesIn();
+            bytesOut += r.getBytesOut();
+            if (r.isCacheHit()) {
+                cacheHits++;
+            }
+            for (int i = 0; i < STAGES.length; i++) {
+                long t = r.getStageTime(STAGES[i]);
+                if (t >= enqueued) {
+                    stageSums[i] += t - enqueued;
+                    stageCounts[i]++;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * An immutable copy of the statistics for an endpoint family.
+     */
+    public static class Snapshot {
+
+        private final String mEndpoint;
+        private final long mCount;
+        private final long mP50;
+        private final long mP95;
+        private final long mP99;
+        private final long mAverage;
+        private final long mBytesIn;
+        private final long mBytesOut;
+        private final long mCacheHits;
+        private final long[] mStageAverages = new long[STAGES.length];
+
+        private Snapshot(String endpoint, Histogram h) {
+            mEndpoint = endpoint;
+            mCount = h.count;
+            mP50 = percentile(h, 0.50);
+            mP95 = percentile(h, 0.95);
+            mP99 = percentile(h, 0.99);
+            mAverage = h.count == 0 ? 0 : h.latencySum / h.count;
+            mBytesIn = h.bytesIn;
+            mBytesOut = h.bytesOut;
+            mCacheHits = h.cacheHits;
+            for (int i = 0; i < STAGES.length; i++) {
+                mStageAverages[i] = h.stageCounts[i] == 0 ? 0 : h.stageSums[i] / h.stageCounts[i];
+            }
+        }
+
+        /**
+         * The latency is the upper bound of the bucket the percentile falls in.
+         * Latencies above the last bucket are reported as the last bucket.
+         */
+        private static long percentile(Histogram h, double p) {
+            if (h.count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * h.count);
+            long seen = 0;
+            for (int i = 0; i < h.buckets.length; i++) {
+                seen += h.buckets[i];
+                if (seen >= rank) {
+                    return BUCKETS[Math.min(i, BUCKETS.length - 1)];
+                }
+            }
+            return BUCKETS[BUCKETS.length - 1];
+        }
+
+        public String getEndpoint() {
+            return mEndpoint;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getP50() {
+            return mP50;
+        }
+
+        public long getP95() {
+            return mP95;
+        }
+
+        public long getP99() {
+            return mP99;
+        }
+
+        public long getAverage() {
+            return mAverage;
+        }
+
+        public long getBytesIn() {
+            return mBytesIn;
+        }
+
+        public long getBytesOut() {
+            return mBytesOut;
+        }
+
+        public long getCacheHits() {
+            return mCacheHits;
+        }
+
+        public double getCacheHitRatio() {
+            return mCount == 0 ? 0 : (double) mCacheHits / (double) mCount;
+        }
+
+        /**
+         * Get the average time from a request was queued, until it reached a given stage.
+         * @param stage A stage
+         * @return A time in milliseconds
+         */
+        public long getAverageTimeTo(Stage stage) {
+            return mStageAverages[stage.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s[count=%d, p50=%dms, p95=%dms, p99=%dms, in=%db, out=%db, cacheHitRatio=%.2f]",
+                    mEndpoint, mCount, mP50, mP95, mP99, mBytesIn, mBytesOut, getCacheHitRatio());
+        }
+
+    }
+
+}
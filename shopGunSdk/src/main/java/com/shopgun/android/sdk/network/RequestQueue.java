@@ -17,23 +17,23 @@
 package com.shopgun.android.sdk.network;
 
 import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.SgnThreadFactory;
 import com.shopgun.android.sdk.ShopGun;
 import com.shopgun.android.sdk.api.Endpoints;
 import com.shopgun.android.sdk.api.Parameters;
 import com.shopgun.android.sdk.log.EventLog;
 import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.network.impl.DeadlineExceededError;
 import com.shopgun.android.sdk.network.impl.HandlerDelivery;
-import com.shopgun.android.sdk.utils.Utils;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.Date;
-import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class RequestQueue {
@@ -43,23 +43,29 @@ public class RequestQueue {
     /** Number of network request dispatcher threads to start. */
     private static final int DEFAULT_NETWORK_THREAD_POOL_SIZE = 4;
 
+    /** Max number of parsed responses waiting for a parser thread, before the network threads parse themselves */
+    private static final int PARSE_QUEUE_CAPACITY = 16;
+
+    /** Time an idle parser thread is kept alive */
+    private static final long PARSE_KEEP_ALIVE = 30;
+
     /** ShopGun object controlling the whole lot */
     private final ShopGun mShopGun;
 
-    /** All requests currently being handled by this request queue */
-    private final Set<Request<?>> mCurrentRequests = new HashSet<Request<?>>();
+    /** All requests currently being handled by this request queue, indexed by tag */
+    private final RequestRegistry mCurrentRequests = new RequestRegistry();
 
     /** Queue for preparation, and cache checks */
     private final PriorityBlockingQueue<Request<?>> mCacheQueue = new PriorityBlockingQueue<Request<?>>();
 
-    /** The queue of requests that are actually going out to the network. */
-    private final PriorityBlockingQueue<Request<?>> mNetworkQueue = new PriorityBlockingQueue<Request<?>>();
+    /** The scheduler of requests that are actually going out to the network. */
+    private final TrafficScheduler mNetworkQueue;
 
     /** Queue of items waiting for session request */
     private final LinkedList<Request<?>> mSessionParking = new LinkedList<Request<?>>();
 
-    /** Queue of items waiting for similar request to finish */
-//    private final Map<String, LinkedList<Request>> mRequestParking = new HashMap<String, LinkedList<Request>>();
+    /** Requests waiting for a similar request to finish */
+    private final RequestCoalescer mRequestParking = new RequestCoalescer();
     /** Network interface for performing requests. */
     private final Network mNetwork;
     /** Cache interface for retrieving and storing responses. */
@@ -68,6 +74,16 @@ public class RequestQueue {
     private final Delivery mDelivery;
     /** Atomic number generator for sequencing requests in the queues */
     private final AtomicInteger mSequenceGenerator = new AtomicInteger();
+    /** Log of the most recent requests, disabled by default */
+    private final NetworkLog mNetworkLog = new NetworkLog();
+    /** Latency and traffic statistics per endpoint */
+    private final RequestMetrics mMetrics = new RequestMetrics();
+    /** Fails requests fast, while an endpoint is degraded */
+    private final CircuitBreaker mCircuitBreaker = new CircuitBreaker();
+    /** Parses responses, so the network threads can go back to the network */
+    private final ThreadPoolExecutor mParseExecutor;
+    /** Timer for requests waiting to be retried, so dispatchers never sleep. Also used for aborting connections */
+    private final ScheduledThreadPoolExecutor mExecutor = createTimerExecutor();
     /* tmp var for testing */
     public int dataIn = 0;
     /* tmp var for testing */
@@ -92,6 +108,8 @@ public class RequestQueue {
         mCache = cache;
         mNetwork = network;
         mNetworkDispatchers = new NetworkDispatcher[poolSize];
+        mNetworkQueue = new TrafficScheduler(poolSize);
+        mParseExecutor = createParseExecutor();
         mDelivery = delivery;
     }
 
@@ -102,7 +120,18 @@ public class RequestQueue {
      * @param network - the implementation you want to use for this RequestQueue
      */
     public RequestQueue(ShopGun shopGun, Cache cache, Network network) {
-        this(shopGun, cache, network, DEFAULT_NETWORK_THREAD_POOL_SIZE, new HandlerDelivery());
+        this(shopGun, cache, network, new HandlerDelivery());
+    }
+
+    /**
+     * Construct with default pool-size
+     * @param shopGun - the ShopGun SDK object to use for requests
+     * @param cache - to use for this RequestQueue
+     * @param network - the implementation you want to use for this RequestQueue
+     * @param delivery - object for returning objects to UI thread
+     */
+    public RequestQueue(ShopGun shopGun, Cache cache, Network network, Delivery delivery) {
+        this(shopGun, cache, network, DEFAULT_NETWORK_THREAD_POOL_SIZE, delivery);
     }
 
     /**
@@ -116,18 +145,45 @@ public class RequestQueue {
 
         // Create network dispatchers (and corresponding threads) up to the pool size.
         for (int i = 0; i < mNetworkDispatchers.length; i++) {
-            NetworkDispatcher networkDispatcher = new NetworkDispatcher(mShopGun, this, mNetworkQueue, mNetwork, mCache, mDelivery);
+            NetworkDispatcher networkDispatcher = new NetworkDispatcher(mShopGun, this, mNetworkQueue, mNetwork, mCache, mDelivery, mParseExecutor);
             mNetworkDispatchers[i] = networkDispatcher;
             networkDispatcher.start();
         }
 
     }
 
+    /**
+     * Parsing is CPU bound, so there's a thread per CPU. The hand-off queue is bounded, if it's
+     * full the network thread parses the response itself, which slows down the network stage.
+     */
+    private static ThreadPoolExecutor createParseExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                PARSE_KEEP_ALIVE, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(PARSE_QUEUE_CAPACITY),
+                new SgnThreadFactory("sgn-parse-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A single timer thread. Once the queue is stopped new timers are discarded, pending ones are cancelled.
+     */
+    private static ScheduledThreadPoolExecutor createTimerExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new SgnThreadFactory("sgn-timer-"), new ThreadPoolExecutor.DiscardPolicy());
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
     /**
      * Stop all currently running dispatchers (Staging, caching and network)
      */
     public void stop() {
 
+        mExecutor.shutdown();
+
         if (mCacheDispatcher != null)
             mCacheDispatcher.quit();
 
@@ -164,32 +220,27 @@ public class RequestQueue {
 
     /**
      * This method is mostly for statistics and allows RequestQueue to tie up any loose
-     * ends that might be in a request. In the future, this can be used for better SDK cache control
-     * as multiple requests to the same endpoint, can be queued, and only one may be dispatched.
-     * On complete the others can be triggered, and instantly hitting local cache.
+     * ends that might be in a request. Multiple GET requests to the same url are queued,
+     * and only one is dispatched. When that request finishes, the others are resumed,
+     * and will instantly hit the local cache. If it didn't leave a response in cache, only
+     * the next request is resumed, see {@link RequestCoalescer}.
      * @param request - request, that finished
      */
-    public synchronized void finish(Request<?> request) {
+    public void finish(Request<?> request) {
 
-        synchronized (mCurrentRequests) {
-            mCurrentRequests.remove(request);
-        }
+        mCurrentRequests.remove(request);
 
-//    	if (!request.ignoreCache() && request.getMethod() == Method.GET) {
-//    		
-//    		synchronized (mRequestParking) {
-//				
-//    			String url = request.getUrl();
-//        		LinkedList<Request> waiting = mRequestParking.remove(url);
-//        		if (waiting != null) {
-//        			String msg = "Posting %d requests, waiting for %s";
-//        			SgnLog.d(TAG, String.format(msg, waiting.size(), url));
-//        			mCacheQueue.addAll(waiting);
-//        		}
-//        		
-//			}
-//    		
-//    	}
+        if (isCoalescable(request)) {
+
+            List<Request<?>> released = mRequestParking.release(request);
+            if (!released.isEmpty()) {
+                SgnLog.d(TAG, String.format(Locale.US, "Resuming %d requests, waiting for %s", released.size(), request.getCoalescingKey()));
+                for (Request<?> r : released) {
+                    mCacheQueue.add(r);
+                }
+            }
+
+        }
 
     }
 
@@ -201,12 +252,54 @@ public class RequestQueue {
      * The log contains a summary of the request it self, and the response given by the API.
      * This can be very useful for debugging.
      * @return the EventLog from this RequestQueue
-     * @deprecated
+     * @deprecated Request summaries are no longer added to this log, see {@link #getNetworkLog()}
      */
     public EventLog getLog() {
         return SgnLog.getLogger().getLog();
     }
 
+    /**
+     * Get the log of the most recent requests performed by this {@link RequestQueue}.
+     * The log is disabled by default, enable it with {@link NetworkLog#setEnabled(boolean)}.
+     * @return The {@link NetworkLog}
+     */
+    public NetworkLog getNetworkLog() {
+        return mNetworkLog;
+    }
+
+    /**
+     * Get the latency, traffic and cache statistics for the requests performed by this {@link RequestQueue}.
+     * @return The {@link RequestMetrics}
+     */
+    public RequestMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Get the {@link TrafficScheduler} deciding the order requests go out to the network,
+     * e.g. to adjust the quota of a {@link Request.TrafficClass}.
+     * @return The {@link TrafficScheduler}
+     */
+    public TrafficScheduler getScheduler() {
+        return mNetworkQueue;
+    }
+
+    /**
+     * Get the {@link CircuitBreaker} that fails requests immediately, while an endpoint is failing.
+     * @return The {@link CircuitBreaker}
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return mCircuitBreaker;
+    }
+
+    /**
+     * Get the {@link Delivery} used for delivering responses
+     * @return A {@link Delivery}
+     */
+    public Delivery getDelivery() {
+        return mDelivery;
+    }
+
     /**
      * Get the {@link Network} associated with this {@link RequestQueue}
      * @return A {@link Network}
@@ -235,17 +328,18 @@ public class RequestQueue {
      */
     public Request<?> add(Request<?> request) {
 
-        synchronized (mCurrentRequests) {
-            mCurrentRequests.add(request);
-        }
-
         prepareRequest(request);
 
         request.setRequestQueue(this);
 
+        // Register after the queue is set, as some requests attach a tag at that point
+        mCurrentRequests.add(request);
+
         request.setSequence(mSequenceGenerator.incrementAndGet());
 
-        appendRequestNetworkLog(request);
+        request.setQueueTime(System.currentTimeMillis());
+        request.markStage(Request.Stage.ENQUEUE);
+        scheduleDeadline(request);
 
         if (mShopGun.getSessionManager().isRequestInFlight() && !isSessionEndpoint(request)) {
 
@@ -263,80 +357,142 @@ public class RequestQueue {
                 SgnLog.w(TAG, "Session changes should be handled by SessionManager. This request might cause problems");
             }
 
-//        	synchronized (mRequestParking) {
-//
-//        		String url = request.getUrl();
-//        		
-//        		// Either add to waiting queue, or add to cache queue
-//        		if (mRequestParking.containsKey(url)) {
-//        			
-//        			request.addEvent("waiting-for-similar-request");
-//        			LinkedList<Request> waiting = mRequestParking.get(url);
-//        			if (waiting == null) {
-//        				waiting = new LinkedList<Request>();
-//        			}
-//        			waiting.add(request);
-//        			mRequestParking.put(url, waiting);
-//        			
-//        		} else {
-//        			
-//        			/* add null, and only allocate memory if needed */
-//        			mRequestParking.put(url, null);
+            if (isCoalescable(request)) {
+                addOrPark(request);
+            } else {
+                mCacheQueue.add(request);
+            }
+
+        }
+
+        return request;
+
+    }
+
+    /**
+     * Add the request to the cache queue, or if a similar request is already in flight, park it
+     * until that request finishes. The parked request will then be answered from cache.
+     * @param request A request
+     */
+    private void addOrPark(Request<?> request) {
+        if (mRequestParking.park(request)) {
             mCacheQueue.add(request);
+        }
+    }
+
+    /**
+     * Perform a failed request again, after a delay. The request goes straight to the network.
+     * @param request A request
+     * @param delay The delay in milliseconds
+     */
+    void retry(final Request<?> request, long delay) {
+        mExecutor.schedule(new Runnable() {
+            public void run() {
+                request.addEvent("retrying-request");
+                mNetworkQueue.add(request);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
 
-//        		}
-//        		
-//        	}
+    /**
+     * Fail the request when its deadline is reached, if it hasn't finished by then.
+     * A request only has one timer, even if it's added again, e.g. after waiting for a session.
+     * @param request A request
+     */
+    private void scheduleDeadline(final Request<?> request) {
+        long remaining = request.getRemainingTime();
+        if (remaining == Long.MAX_VALUE || request.setDeadlineScheduled(true)) {
+            return;
+        }
+        mExecutor.schedule(new Runnable() {
+            public void run() {
+                onDeadline(request);
+            }
+        }, Math.max(0, remaining), TimeUnit.MILLISECONDS);
+    }
+
+    private void onDeadline(Request<?> request) {
+
+        request.setDeadlineScheduled(false);
 
+        if (request.isFinished() || request.isCanceled()) {
+            return;
         }
 
-        return request;
+        if (!request.isDeadlineExceeded()) {
+            // The deadline have been moved
+            scheduleDeadline(request);
+            return;
+        }
+
+        if (removeFromQueues(request)) {
+            // No dispatcher will see the request, so fail it here
+            request.addEvent("deadline-exceeded-in-queue");
+            NetworkUtils.postError(mDelivery, request, Response.fromError(new DeadlineExceededError()));
+        } else {
+            // If the request is in flight, the dispatcher fails it once the connection is closed
+            request.abortNetworkRequest();
+        }
 
     }
 
-    private void appendRequestNetworkLog(Request<?> r) {
+    /**
+     * Remove a request that hasn't been picked up by a dispatcher yet, from the queue it's waiting in.
+     * @param request A request
+     * @return {@code true} if the request was removed, else {@code false}
+     */
+    private boolean removeFromQueues(Request<?> request) {
 
-        JSONObject log = r.getNetworkLog();
+        if (mCacheQueue.remove(request) || mNetworkQueue.remove(request)) {
+            return true;
+        }
 
-        try {
-            log.put("method", r.getMethod().toString());
-            log.put("url", Utils.requestToUrlAndQueryString(r));
-            log.put("Content-Type", r.getBodyContentType());
-            log.put("headers", new JSONObject(r.getHeaders()));
-            log.put("time", Utils.dateToString(new Date()));
-        } catch (JSONException e) {
-            SgnLog.e(TAG, e.getMessage(), e);
+        synchronized (mSessionParking) {
+            if (mSessionParking.remove(request)) {
+                return true;
+            }
         }
 
+        return mRequestParking.remove(request);
+
+    }
+
+    /**
+     * Abort the connection of a cancelled request.
+     * @param abortable The {@link Request.Abortable} of the request
+     */
+    void abort(final Request.Abortable abortable) {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                abortable.abort();
+            }
+        });
+    }
+
+    /**
+     * Only GET requests that may use, and be added to the cache can wait for a similar request,
+     * as the response will be delivered from the cache.
+     * @param r A request
+     * @return {@code true} if the request can be coalesced with similar requests, else {@code false}
+     */
+    private boolean isCoalescable(Request<?> r) {
+        return r.getMethod() == Request.Method.GET && r.isCacheable() && !r.ignoreCache() && r.getUrl() != null;
     }
 
     /**
      * Cancel all {@link Request requests} with a given tag.
      *
      * <p>Matching is done with {@code ==} and not the
-     * {@link Object#equals(Object) equals} method</p>
+     * {@link Object#equals(Object) equals} method. The tag of a request is read when it's
+     * added to the queue, changing the tag afterwards will not affect this method.</p>
      *
      * @param tag A tag to match
      * @return The number of cancelled requests
      */
     public int cancelAll(Object tag) {
 
-        int count = 0;
-        if (tag == null) {
-            // tag == null is no dice, it'll cancel all requests...
-            return count;
-        }
-
-        synchronized (mCurrentRequests) {
-            for (Request<?> r : mCurrentRequests) {
-                if (r.getTag() == tag && !r.isCanceled()) {
-                    count++;
-                    r.cancel();
-                }
-            }
-        }
-
-        return count;
+        // tag == null is no dice, nothing is cancelled
+        return mCurrentRequests.cancelAll(tag);
     }
 
     private boolean isSessionEndpoint(Request<?> r) {
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The set of requests currently handled by a {@link RequestQueue}, indexed by their tag.
+ *
+ * <p>Registering and unregistering requests only locks the set of requests with the same tag, and
+ * {@link #cancelAll(Object)} only visits the requests with the given tag. The tag of a request
+ * is read when it's registered, later changes to the tag doesn't move the request.</p>
+ */
+class RequestRegistry {
+
+    /** Key for requests without a tag, these aren't indexed */
+    private static final Object NO_TAG = new Object();
+
+    /** All registered requests, and the key they are indexed by */
+    private final ConcurrentMap<Request<?>, Object> mRequests = new ConcurrentHashMap<Request<?>, Object>();
+
+    /**
+     * Requests by tag, tags are compared by identity. A set is guarded by its own monitor, and is
+     * only removed from the map while holding it, once it's empty.
+     */
+    private final ConcurrentMap<TagKey, Set<Request<?>>> mTags = new ConcurrentHashMap<TagKey, Set<Request<?>>>();
+
+    /**
+     * Register a request. Registering a request that is already registered has no effect.
+     * @param request A request
+     */
+    void add(Request<?> request) {
+
+        Object tag = request.getTag();
+        if (tag == null) {
+            mRequests.putIfAbsent(request, NO_TAG);
+            return;
+        }
+
+        TagKey key = new TagKey(tag);
+        if (mRequests.putIfAbsent(request, key) != null) {
+            return;
+        }
+
+        while (true) {
+            Set<Request<?>> requests = mTags.get(key);
+            if (requests == null) {
+                Set<Request<?>> newSet = new HashSet<Request<?>>();
+                requests = mTags.putIfAbsent(key, newSet);
+                if (requests == null) {
+                    requests = newSet;
+                }
+            }
+            synchronized (requests) {
+                // The set may have been dropped by remove() before we got the lock, if so try again
+                if (mTags.get(key) == requests) {
+                    requests.add(request);
+                    return;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Unregister a request.
+     * @param request A request
+     */
+    void remove(Request<?> request) {
+
+        Object key = mRequests.remove(request);
+        if (key == null || key == NO_TAG) {
+            return;
+        }
+
+        Set<Request<?>> requests = mTags.get(key);
+        if (requests != null) {
+            synchronized (requests) {
+                requests.remove(request);
+                if (requests.isEmpty()) {
+                    mTags.remove(key, requests);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Cancel all registered requests with the given tag.
+     * @param tag A tag to match, using {@code ==}
+     * @return The number of cancelled requests
+     */
+    int cancelAll(Object tag) {
+
+        int count = 0;
+        if (tag == null) {
+            return count;
+        }
+
+        Set<Request<?>> requests = mTags.get(new TagKey(tag));
+        if (requests == null) {
+            return count;
+        }
+
+        List<Request<?>> snapshot;
+        synchronized (requests) {
+            snapshot = new ArrayList<Request<?>>(requests);
+        }
+
+        for (Request<?> r : snapshot) {
+            if (!r.isCanceled()) {
+                count++;
+                r.cancel();
+            }
+        }
+        return count;
+
+    }
+
+    /**
+     * Wraps a tag, so it's compared by identity rather than {@link Object#equals(Object)}.
+     */
+    private static final class TagKey {
+
+        private final Object mTag;
+
+        TagKey(Object tag) {
+            mTag = tag;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TagKey && ((TagKey) o).mTag == mTag;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(mTag);
+        }
+
+    }
+
+}
@@ -29,6 +29,12 @@ public class Response<T> {
     /** Item for containing cache items */
     public Map<String, Cache.Item> cache;
 
+    /**
+     * Indication that this is an expired response from cache, and that the request
+     * is still being refreshed. The request must not be finished on delivery.
+     */
+    public boolean intermediate = false;
+
     private Response(T result, Map<String, Cache.Item> cache, ShopGunError error) {
         this.result = result;
         this.error = error;
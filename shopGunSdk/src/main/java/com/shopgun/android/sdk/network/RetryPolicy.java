@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import java.util.Random;
+
+/**
+ * Decides if, and when, a failed {@link Request} is performed again.
+ *
+ * <p>Requests are retried on network errors, and on responses indicating a transient problem
+ * with the API (see {@link NetworkUtils#isTransientError(int)}). The delay before each retry grows
+ * exponentially from the initial backoff, is capped by the max backoff, and a random jitter
+ * spreads the retries of many clients over time. A {@code Retry-After} header from the API is
+ * respected, if it's longer than the max backoff the request isn't retried.</p>
+ *
+ * <p>POST requests aren't idempotent, and are only retried if the policy allows it.</p>
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_RETRIES = 1;
+    public static final long DEFAULT_INITIAL_BACKOFF = 1000;
+    public static final long DEFAULT_MAX_BACKOFF = 16000;
+    public static final float DEFAULT_BACKOFF_MULTIPLIER = 2f;
+
+    /** The default policy, idempotent requests are retried once */
+    public static final RetryPolicy DEFAULT = new RetryPolicy();
+
+    /** A policy that never retries */
+    public static final RetryPolicy NONE = new RetryPolicy(0, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF, DEFAULT_BACKOFF_MULTIPLIER, false);
+
+    private static final Random RANDOM = new Random();
+
+    private final int mMaxRetries;
+    private final long mInitialBackoff;
+    private final long mMaxBackoff;
+    private final float mBackoffMultiplier;
+    private final boolean mRetryNonIdempotent;
+
+    public RetryPolicy() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF, DEFAULT_BACKOFF_MULTIPLIER, false);
+    }
+
+    /**
+     * Create a new policy.
+     * @param maxRetries The max number of times a request is retried
+     * @param initialBackoff The delay before the first retry, in milliseconds
+     * @param maxBackoff The max delay before a retry, in milliseconds
+     * @param backoffMultiplier The factor the delay grows by, for each retry
+     * @param retryNonIdempotent {@code true} to also retry POST requests
+     */
+    public RetryPolicy(int maxRetries, long initialBackoff, long maxBackoff, float backoffMultiplier, boolean retryNonIdempotent) {
+        if (maxRetries < 0 || initialBackoff < 0 || maxBackoff < initialBackoff || backoffMultiplier < 1) {
+            throw new IllegalArgumentException("Invalid retry policy");
+        }
+        mMaxRetries = maxRetries;
+        mInitialBackoff = initialBackoff;
+        mMaxBackoff = maxBackoff;
+        mBackoffMultiplier = backoffMultiplier;
+        mRetryNonIdempotent = retryNonIdempotent;
+    }
+
+    public int getMaxRetries() {
+        return mMaxRetries;
+    }
+
+    public long getInitialBackoff() {
+        return mInitialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return mMaxBackoff;
+    }
+
+    public float getBackoffMultiplier() {
+        return mBackoffMultiplier;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return mRetryNonIdempotent;
+    }
+
+    /**
+     * Determine if a failed request should be retried.
+     * @param request The failed request
+     * @param error The error
+     * @param statusCode The HTTP status code of the response, or 0 if no response was received
+     * @return {@code true} if the request should be retried, else {@code false}
+     */
+    public boolean shouldRetry(Request<?> request, ShopGunError error, int statusCode) {
+        if (request.getRetryCount() >= mMaxRetries) {
+            return false;
+        }
+        if (request.getMethod() == Request.Method.POST && !mRetryNonIdempotent) {
+            return false;
+        }
+        if (statusCode == 0) {
+            return error != null && error.getCode() == ShopGunError.Code.NETWORK_ERROR;
+        }
+        return NetworkUtils.isTransientError(statusCode);
+    }
+
+    /**
+     * Get the delay before the next retry. The delay is chosen at random between half and all
+     * of the current backoff, so clients that failed at the same time will not retry at the same time.
+     * @param retryCount The number of times the request have been retried
+     * @param retryAfter The delay requested by the API in milliseconds, or -1
+     * @return The delay in milliseconds, or -1 if the request shouldn't be retried
+     */
+    public long getDelay(int retryCount, long retryAfter) {
+        if (retryAfter > mMaxBackoff) {
+            return -1;
+        }
+        double backoff = mInitialBackoff * Math.pow(mBackoffMultiplier, retryCount);
+        long cap = (long) Math.min(mMaxBackoff, backoff);
+        long half = cap / 2;
+        long delay = half + (long) (RANDOM.nextDouble() * (cap - half));
+        return Math.max(delay, retryAfter);
+    }
+
+}
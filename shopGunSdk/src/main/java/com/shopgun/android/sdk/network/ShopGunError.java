@@ -176,6 +176,15 @@ public class ShopGunError extends Exception implements IJson<JSONObject>,Parcela
          */
         public static final int NETWORK_ERROR = 10200;
 
+        /**
+         * Requests to the endpoint have been failing, and are refused by the SDK for a while,
+         * to give the API time to recover. See {@link CircuitBreaker}.
+         */
+        public static final int SERVICE_UNAVAILABLE = 10201;
+
+        /** The deadline of the request was reached, before an answer was received. */
+        public static final int DEADLINE_EXCEEDED = 10202;
+
         /** Auto loading of objects failed */
         public static final int AUTO_LOAD_ERROR = 10300;
 
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link Request} implementing this interface can parse successful responses directly from the
+ * connection, rather than having the {@link Network} read the whole body into memory first.
+ *
+ * <p>When the body have been streamed, the {@link NetworkResponse} handed to
+ * {@link Request#parseNetworkResponse(NetworkResponse)} will have {@link NetworkResponse#streamed}
+ * set, and contain no data. The request must then return the result it built while streaming.</p>
+ */
+public interface StreamingRequest {
+
+    /**
+     * Parse the response body. This is called on the network thread.
+     * @param inputStream The response body, this will be closed by the {@link Network}
+     * @param encoding The encoding of the body
+     * @throws IOException If reading or parsing the stream fails
+     */
+    public void parseNetworkStream(InputStream inputStream, String encoding) throws IOException;
+
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network;
+
+import android.os.SystemClock;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.network.Request.TrafficClass;
+
+import java.util.PriorityQueue;
+
+/**
+ * Schedules requests for the {@link NetworkDispatcher network dispatchers}, by their
+ * {@link TrafficClass}.
+ *
+ * <p>Each traffic class has its own queue and a quota of dispatchers it may occupy at any time.
+ * Background classes (all but {@link TrafficClass#INTERACTIVE}) share a combined limit, that is one
+ * less than the number of dispatchers, so there's always a dispatcher available for interactive
+ * requests. Within a class, requests are ordered by {@link Request.Priority} and then sequence.</p>
+ *
+ * <p>When more than one class can be served, the one with the highest rank wins. A class gains a
+ * rank for every {@link #AGING_INTERVAL} milliseconds it has been waiting, so background traffic
+ * is delayed but never starved.</p>
+ */
+public class TrafficScheduler {
+
+    public static final String TAG = Constants.getTag(TrafficScheduler.class);
+
+    /** Time a waiting class must wait to gain one rank */
+    public static final long AGING_INTERVAL = 2000;
+
+    private static final TrafficClass[] CLASSES = TrafficClass.values();
+
+    private final PriorityQueue<Request<?>>[] mQueues;
+    private final int[] mQuota;
+    private final int[] mRunning;
+    /** Time the head of each queue started waiting, or 0 if the queue is empty */
+    private final long[] mWaitingSince;
+    private final int mBackgroundQuota;
+    private int mBackgroundRunning = 0;
+
+    /**
+     * Create a new scheduler, with default quotas for the given number of dispatchers.
+     * @param poolSize The number of {@link NetworkDispatcher} threads taking requests
+     */
+    @SuppressWarnings("unchecked")
+    public TrafficScheduler(int poolSize) {
+        int size = Math.max(1, poolSize);
+        mQueues = new PriorityQueue[CLASSES.length];
+        mQuota = new int[CLASSES.length];
+        mRunning = new int[CLASSES.length];
+        mWaitingSince = new long[CLASSES.length];
+        for (int i = 0; i < CLASSES.length; i++) {
+            mQueues[i] = new PriorityQueue<Request<?>>();
+        }
+        // With a single dispatcher background traffic must be allowed to run
+        mBackgroundQuota = Math.max(1, size - 1);
+        mQuota[TrafficClass.INTERACTIVE.ordinal()] = size;
+        mQuota[TrafficClass.PREFETCH.ordinal()] = mBackgroundQuota;
+        mQuota[TrafficClass.SYNC.ordinal()] = Math.max(1, size / 2);
+        mQuota[TrafficClass.TELEMETRY.ordinal()] = 1;
+    }
+
+    /**
+     * Set the max number of dispatchers a traffic class may occupy at any one time.
+     * Background classes are still bound by the combined limit.
+     * @param trafficClass A traffic class
+     * @param quota The max number of concurrent requests, at least 1
+     */
+    public synchronized void setQuota(TrafficClass trafficClass, int quota) {
+        if (quota < 1) {
+            throw new IllegalArgumentException("Quota must be at least 1");
+        }
+        mQuota[trafficClass.ordinal()] = quota;
+        notifyAll();
+    }
+
+    /**
+     * Get the max number of dispatchers a traffic class may occupy at any one time.
+     * @param trafficClass A traffic class
+     * @return The quota
+     */
+    public synchronized int getQuota(TrafficClass trafficClass) {
+        return mQuota[trafficClass.ordinal()];
+    }
+
+    /**
+     * Add a request to the queue of its traffic class.
+     * @param request A request
+     */
+    public synchronized void add(Request<?> request) {
+        // The class may change while the request is queued, so remember the one used
+        TrafficClass c = request.getTrafficClass();
+        request.setScheduledClass(c);
+        int i = c.ordinal();
+        if (mQueues[i].isEmpty()) {
+            mWaitingSince[i] = SystemClock.elapsedRealtime();
+        }
+        mQueues[i].add(request);
+        notifyAll();
+    }
+
+    /**
+     * Remove a request that is waiting to be dispatched.
+     * @param request A request
+     * @return {@code true} if the request was removed, {@code false} if it wasn't waiting
+     */
+    public synchronized boolean remove(Request<?> request) {
+        TrafficClass c = request.getScheduledClass();
+        if (c == null) {
+            return false;
+        }
+        int i = c.ordinal();
+        boolean removed = mQueues[i].remove(request);
+        if (mQueues[i].isEmpty()) {
+            mWaitingSince[i] = 0;
+        }
+        return removed;
+    }
+
+    /**
+     * Take the next request that may be dispatched, waiting if none are available.
+     * The dispatcher must {@link #release(TrafficClass) release} the class the request was
+     * scheduled by, when it's done with the request.
+     * @return A request
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public synchronized Request<?> take() throws InterruptedException {
+        while (true) {
+            int i = next(SystemClock.elapsedRealtime());
+            if (i != -1) {
+                Request<?> request = mQueues[i].poll();
+                mWaitingSince[i] = mQueues[i].isEmpty() ? 0 : SystemClock.elapsedRealtime();
+                mRunning[i]++;
+                if (isBackground(i)) {
+                    mBackgroundRunning++;
+                }
+                return request;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Release the quota held by a request that was {@link #take() taken}.
+     * @param trafficClass The class the request was scheduled by
+     */
+    public synchronized void release(TrafficClass trafficClass) {
+        int i = trafficClass.ordinal();
+        mRunning[i]--;
+        if (isBackground(i)) {
+            mBackgroundRunning--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Get the number of requests waiting to be dispatched.
+     * @param trafficClass A traffic class
+     * @return The number of waiting requests
+     */
+    public synchronized int getWaitingCount(TrafficClass trafficClass) {
+        return mQueues[trafficClass.ordinal()].size();
+    }
+
+    /**
+     * Get the number of requests currently dispatched.
+     * @param trafficClass A traffic class
+     * @return The number of dispatched requests
+     */
+    public synchronized int getRunningCount(TrafficClass trafficClass) {
+        return mRunning[trafficClass.ordinal()];
+    }
+
+    /**
+     * Find the class to serve next. The rank of a class is its position in {@link TrafficClass}
+     * less the number of aging intervals it has waited, the lowest rank wins.
+     * @return The index of a class, or -1 if no class can be served
+     */
+    private int next(long now) {
+        int best = -1;
+        long bestRank = Long.MAX_VALUE;
+        for (int i = 0; i < CLASSES.length; i++) {
+            if (mQueues[i].isEmpty() || mRunning[i] >= mQuota[i] ||
+                    (isBackground(i) && mBackgroundRunning >= mBackgroundQuota)) {
+                continue;
+            }
+            long rank = i - (now - mWaitingSince[i]) / AGING_INTERVAL;
+            if (rank < bestRank) {
+                best = i;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isBackground(int i) {
+        return i != TrafficClass.INTERACTIVE.ordinal();
+    }
+
+}
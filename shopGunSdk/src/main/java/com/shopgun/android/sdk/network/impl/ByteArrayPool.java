@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network.impl;
+
+import com.shopgun.android.sdk.Constants;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A pool of byte arrays, used for reading network responses without allocating new buffers
+ * for every request. The pool is thread safe, and is meant to be shared by all network threads.
+ *
+ * <p>Buffers are kept in buckets, where each bucket holds buffers of a size that is a power of two.
+ * {@link #getBuf(int)} may therefore return a buffer that is larger than requested. When the pool
+ * retains more than the size limit, the least recently returned buffers are discarded.</p>
+ */
+public class ByteArrayPool {
+
+    public static final String TAG = Constants.getTag(ByteArrayPool.class);
+
+    /** Default limit of bytes retained by the pool */
+    public static final int DEFAULT_SIZE_LIMIT = 1024 * 1024;
+
+    /** The smallest bucket, 4K */
+    private static final int MIN_BUCKET_SHIFT = 12;
+
+    /** The largest bucket, 1M. Larger buffers are not pooled */
+    private static final int MAX_BUCKET_SHIFT = 20;
+
+    private final List<LinkedList<byte[]>> mBuckets;
+    private final LinkedList<byte[]> mBuffersByLastUse = new LinkedList<byte[]>();
+    private final int mSizeLimit;
+    private int mRetainedBytes = 0;
+    private long mRequestCount = 0;
+    private long mHitCount = 0;
+
+    public ByteArrayPool() {
+        this(DEFAULT_SIZE_LIMIT);
+    }
+
+    /**
+     * @param sizeLimit The maximum number of bytes the pool may retain
+     */
+    public ByteArrayPool(int sizeLimit) {
+        mSizeLimit = sizeLimit;
+        int count = MAX_BUCKET_SHIFT - MIN_BUCKET_SHIFT + 1;
+        mBuckets = new ArrayList<LinkedList<byte[]>>(count);
+        for (int i = 0; i < count; i++) {
+            mBuckets.add(new LinkedList<byte[]>());
+        }
+    }
+
+    /**
+     * Get a buffer from the pool, or allocate a new one if none are available.
+     * @param len The minimum size of the buffer
+     * @return A buffer, at least {@code len} bytes long
+     */
+    public synchronized byte[] getBuf(int len) {
+        mRequestCount++;
+        int index = bucketIndex(len);
+        if (index == -1) {
+            return new byte[len];
+        }
+        LinkedList<byte[]> bucket = mBuckets.get(index);
+        if (bucket.isEmpty()) {
+            return new byte[bucketSize(index)];
+        }
+        byte[] buf = bucket.removeFirst();
+        mBuffersByLastUse.remove(buf);
+        mRetainedBytes -= buf.length;
+        mHitCount++;
+        return buf;
+    }
+
+    /**
+     * Return a buffer to the pool. The buffer must not be used after this.
+     * @param buf A buffer, may be {@code null}
+     */
+    public synchronized void returnBuf(byte[] buf) {
+        if (buf == null || buf.length > mSizeLimit) {
+            return;
+        }
+        int index = bucketIndex(buf.length);
+        if (index == -1 || bucketSize(index) != buf.length) {
+            // Only buffers that exactly fit a bucket are pooled
+            return;
+        }
+        mBuckets.get(index).addFirst(buf);
+        mBuffersByLastUse.add(buf);
+        mRetainedBytes += buf.length;
+        trim();
+    }
+
+    private void trim() {
+        while (mRetainedBytes > mSizeLimit) {
+            byte[] buf = mBuffersByLastUse.removeFirst();
+            mBuckets.get(bucketIndex(buf.length)).remove(buf);
+            mRetainedBytes -= buf.length;
+        }
+    }
+
+    /**
+     * Get the index of the smallest bucket that can hold {@code len} bytes
+     * @return A bucket index, or -1 if the buffer is too large to be pooled
+     */
+    private static int bucketIndex(int len) {
+        int shift = MIN_BUCKET_SHIFT;
+        while ((1 << shift) < len) {
+            shift++;
+            if (shift > MAX_BUCKET_SHIFT) {
+                return -1;
+            }
+        }
+        return shift - MIN_BUCKET_SHIFT;
+    }
+
+    private static int bucketSize(int index) {
+        return 1 << (index + MIN_BUCKET_SHIFT);
+    }
+
+    /**
+     * Get the number of bytes currently retained by the pool
+     * @return A number of bytes
+     */
+    public synchronized int getRetainedBytes() {
+        return mRetainedBytes;
+    }
+
+    /**
+     * Get the number of calls to {@link #getBuf(int)}
+     * @return The number of requested buffers
+     */
+    public synchronized long getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * Get the number of calls to {@link #getBuf(int)}, that was served by a pooled buffer
+     * @return The number of hits
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Get the ratio of buffer requests served by a pooled buffer
+     * @return A number between 0 and 1
+     */
+    public synchronized float getHitRate() {
+        return mRequestCount == 0 ? 0f : (float) mHitCount / (float) mRequestCount;
+    }
+
+    /**
+     * Release all buffers retained by the pool
+     */
+    public synchronized void clear() {
+        for (LinkedList<byte[]> bucket : mBuckets) {
+            bucket.clear();
+        }
+        mBuffersByLastUse.clear();
+        mRetainedBytes = 0;
+    }
+
+}
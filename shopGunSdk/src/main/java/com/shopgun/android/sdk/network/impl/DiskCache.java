@@ -0,0 +1,612 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network.impl;
+
+import android.content.Context;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.NetworkUtils;
+import com.shopgun.android.sdk.network.PeekableCache;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.Response;
+import com.shopgun.android.sdk.utils.HashUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Cache} that persists items to disk, so they survive a process restart.
+ *
+ * <p>The cache is bounded by the number of bytes used on disk, and evicts the least recently
+ * used items when the limit is exceeded. Each item is stored in its own file, in a compact binary
+ * format with the time to live, and validators of the item. An append-only journal records every
+ * write, removal and read, and is replayed on startup to restore the index and LRU order. Items are
+ * written to a temporary file and renamed in place before they are added to the journal, so a crash
+ * never leaves a partially written item behind.</p>
+ *
+ * <p>Only items holding a {@link String}, {@code byte[]}, {@link JSONObject}, {@link JSONArray}
+ * or a {@link List} of {@link String} (as created by {@link JsonCacheHelper}) are persisted.</p>
+ *
+ * <p>All methods perform disk I/O, and should not be called from the UI thread.
+ * See {@link TwoTierCache} for combining this cache with a {@link MemoryCache}.</p>
+ */
+public class DiskCache implements PeekableCache {
+
+    public static final String TAG = Constants.getTag(DiskCache.class);
+
+    /** Default max size of the cache on disk, 5mb */
+    public static final long DEFAULT_MAX_SIZE = 5 * 1024 * 1024;
+
+    private static final String DEFAULT_DIRECTORY = "sgn-api-cache";
+
+    private static final String JOURNAL = "journal";
+    private static final String JOURNAL_TMP = "journal.tmp";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final String CLEAN = "CLEAN";
+    private static final String REMOVE = "REMOVE";
+    private static final String READ = "READ";
+
+    /** Rebuild the journal once it contains this many lines, that doesn't add to the current state */
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+
+    /** Magic number, and version of the entry format */
+    private static final int ENTRY_MAGIC = 0x53474e01;
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_BYTES = 2;
+    private static final byte TYPE_JSON_OBJECT = 3;
+    private static final byte TYPE_JSON_ARRAY = 4;
+    private static final byte TYPE_STRING_LIST = 5;
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    /** Index of all items on disk, in LRU order */
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<String, Entry>(0, 0.75f, true);
+    private long mSize = 0;
+    private int mRedundantOps = 0;
+    private Writer mJournal;
+    private boolean mInitialized = false;
+
+    /**
+     * Create a new cache in the apps cache directory, with the default size.
+     * @param context A context
+     */
+    public DiskCache(Context context) {
+        this(new File(context.getCacheDir(), DEFAULT_DIRECTORY), DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a new cache.
+     * @param directory The directory to store items in, this must be dedicated to this cache
+     * @param maxSize The max number of bytes the cache may use on disk
+     */
+    public DiskCache(File directory, long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    public void put(Request<?> request, Response<?> response) {
+
+        if (NetworkUtils.shouldCache(request, response)) {
+            request.addEvent("add-response-to-disk-cache");
+            for (Map.Entry<String, Item> e : response.cache.entrySet()) {
+                put(e.getKey(), e.getValue());
+            }
+        }
+
+    }
+
+    /**
+     * Write a single item to the cache.
+     * @param key A key
+     * @param item The item to write
+     */
+    public synchronized void put(String key, Cache.Item item) {
+
+        initialize();
+        if (mJournal == null || key.indexOf('\n') != -1 || key.indexOf('\r') != -1) {
+            return;
+        }
+
+        File file = getFile(key);
+        File tmp = new File(mDirectory, file.getName() + TMP_SUFFIX);
+        DataOutputStream out = null;
+        boolean written = false;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            written = writeEntry(out, key, item);
+        } catch (IOException e) {
+            SgnLog.d(TAG, "Unable to write " + key, e);
+        } finally {
+            closeQuietly(out);
+        }
+
+        if (!written || (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file)))) {
+            tmp.delete();
+            return;
+        }
+
+        long size = file.length();
+        Entry old = mEntries.put(key, new Entry(item.expires, size));
+        if (old != null) {
+            mSize -= old.size;
+            mRedundantOps++;
+        }
+        mSize += size;
+        appendJournal(CLEAN + " " + item.expires + " " + size + " " + key);
+        trimToSize();
+
+    }
+
+    public synchronized Cache.Item get(String key) {
+        initialize();
+        Entry e = mEntries.get(key);
+        if (e == null || e.expires < System.currentTimeMillis()) {
+            return null;
+        }
+        return read(key);
+    }
+
+    public synchronized Cache.Item peek(String key) {
+        initialize();
+        return mEntries.containsKey(key) ? read(key) : null;
+    }
+
+    public synchronized void clear() {
+        initialize();
+        closeQuietly(mJournal);
+        mJournal = null;
+        deleteContents();
+        mEntries.clear();
+        mSize = 0;
+        rebuildJournal();
+    }
+
+    /**
+     * Get the number of bytes the cache currently uses on disk
+     * @return A number of bytes
+     */
+    public synchronized long getSize() {
+        initialize();
+        return mSize;
+    }
+
+    private Cache.Item read(String key) {
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(getFile(key))));
+            Cache.Item item = readEntry(in, key);
+            if (item == null) {
+                // The file has been overwritten by another key with the same hash
+                remove(key, false);
+                return null;
+            }
+            mRedundantOps++;
+            appendJournal(READ + " " + key);
+            return item;
+        } catch (IOException e) {
+            SgnLog.d(TAG, "Unable to read " + key, e);
+            remove(key, true);
+            return null;
+        } catch (JSONException e) {
+            SgnLog.d(TAG, "Unable to read " + key, e);
+            remove(key, true);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+
+    }
+
+    private void remove(String key, boolean deleteFile) {
+        Entry e = mEntries.remove(key);
+        if (e != null) {
+            mSize -= e.size;
+            mRedundantOps++;
+            if (deleteFile) {
+                getFile(key).delete();
+            }
+            appendJournal(REMOVE + " " + key);
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && it.hasNext()) {
+            // Least recently used items are iterated first
+            Map.Entry<String, Entry> e = it.next();
+            it.remove();
+            mSize -= e.getValue().size;
+            mRedundantOps++;
+            getFile(e.getKey()).delete();
+            appendJournal(REMOVE + " " + e.getKey());
+        }
+    }
+
+    private void initialize() {
+
+        if (mInitialized) {
+            return;
+        }
+        mInitialized = true;
+
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            SgnLog.w(TAG, "Unable to create cache directory " + mDirectory.getAbsolutePath());
+            return;
+        }
+
+        File journal = new File(mDirectory, JOURNAL);
+        if (journal.exists()) {
+            try {
+                readJournal(journal);
+            } catch (IOException e) {
+                SgnLog.w(TAG, "Unable to read journal, clearing cache", e);
+                deleteContents();
+                mEntries.clear();
+                mSize = 0;
+            }
+        }
+
+        deleteOrphans();
+        rebuildJournal();
+
+    }
+
+    private void readJournal(File journal) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new FileReader(journal));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                readJournalLine(line);
+            }
+        } finally {
+            closeQuietly(reader);
+        }
+
+    }
+
+    private void readJournalLine(String line) {
+
+        int first = line.indexOf(' ');
+        if (first == -1) {
+            // The last line may have been truncated by a crash
+            return;
+        }
+
+        String op = line.substring(0, first);
+        if (CLEAN.equals(op)) {
+            String[] parts = line.split(" ", 4);
+            if (parts.length != 4) {
+                return;
+            }
+            try {
+                Entry e = new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                Entry old = mEntries.put(parts[3], e);
+                if (old != null) {
+                    mSize -= old.size;
+                }
+                mSize += e.size;
+            } catch (NumberFormatException e) {
+                // Truncated line, ignore
+            }
+        } else if (REMOVE.equals(op)) {
+            Entry e = mEntries.remove(line.substring(first + 1));
+            if (e != null) {
+                mSize -= e.size;
+            }
+        } else if (READ.equals(op)) {
+            // Update the LRU order
+            mEntries.get(line.substring(first + 1));
+        }
+
+    }
+
+    /**
+     * Delete files that are not in the index, e.g. temporary files, and items never added to the journal.
+     * Also drop index entries, if their files are missing.
+     */
+    private void deleteOrphans() {
+
+        Map<String, String> names = new LinkedHashMap<String, String>();
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            File f = getFile(e.getKey());
+            if (f.exists()) {
+                names.put(f.getName(), e.getKey());
+            } else {
+                it.remove();
+                mSize -= e.getValue().size;
+            }
+        }
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            if (!JOURNAL.equals(name) && !names.containsKey(name)) {
+                f.delete();
+            }
+        }
+
+    }
+
+    /**
+     * Write a new journal containing only the current state of the index, and replace the old one.
+     */
+    private void rebuildJournal() {
+
+        closeQuietly(mJournal);
+        mJournal = null;
+
+        File journal = new File(mDirectory, JOURNAL);
+        File tmp = new File(mDirectory, JOURNAL_TMP);
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new FileWriter(tmp));
+            for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+                writer.write(CLEAN + " " + e.getValue().expires + " " + e.getValue().size + " " + e.getKey() + "\n");
+            }
+            writer.close();
+            writer = null;
+            if (!tmp.renameTo(journal)) {
+                journal.delete();
+                if (!tmp.renameTo(journal)) {
+                    throw new IOException("Unable to rename journal");
+                }
+            }
+            mJournal = new BufferedWriter(new FileWriter(journal, true));
+            mRedundantOps = 0;
+        } catch (IOException e) {
+            SgnLog.w(TAG, "Unable to write journal, disabling cache", e);
+            closeQuietly(writer);
+        }
+
+    }
+
+    private void appendJournal(String line) {
+
+        if (mJournal == null) {
+            return;
+        }
+
+        try {
+            mJournal.write(line);
+            mJournal.write('\n');
+            mJournal.flush();
+        } catch (IOException e) {
+            SgnLog.w(TAG, "Unable to append to journal", e);
+        }
+
+        if (mRedundantOps >= REDUNDANT_OP_COMPACT_THRESHOLD && mRedundantOps >= mEntries.size()) {
+            rebuildJournal();
+        }
+
+    }
+
+    private void deleteContents() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * The file name is the MD5 hex digest of the key. Files named by an older scheme are
+     * deleted as orphans, when the cache is initialized.
+     */
+    private File getFile(String key) {
+        return new File(mDirectory, HashUtils.md5(key));
+    }
+
+    private static boolean writeEntry(DataOutputStream out, String key, Cache.Item item) throws IOException {
+
+        Object o = item.object;
+        byte type;
+        if (o instanceof String) {
+            type = TYPE_STRING;
+        } else if (o instanceof byte[]) {
+            type = TYPE_BYTES;
+        } else if (o instanceof JSONObject) {
+            type = TYPE_JSON_OBJECT;
+        } else if (o instanceof JSONArray) {
+            type = TYPE_JSON_ARRAY;
+        } else if (o instanceof List && isStringList((List<?>) o)) {
+            type = TYPE_STRING_LIST;
+        } else {
+            return false;
+        }
+
+        out.writeInt(ENTRY_MAGIC);
+        writeString(out, key);
+        out.writeLong(item.expires);
+        out.writeLong(item.size);
+        writeString(out, item.etag);
+        writeString(out, item.lastModified);
+        out.writeByte(type);
+
+        switch (type) {
+            case TYPE_STRING:
+                writeString(out, (String) o);
+                break;
+            case TYPE_BYTES:
+                byte[] bytes = (byte[]) o;
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                break;
+            case TYPE_STRING_LIST:
+                List<?> list = (List<?>) o;
+                out.writeInt(list.size());
+                for (Object s : list) {
+                    writeString(out, (String) s);
+                }
+                break;
+            default:
+                // JSON is stored as text
+                writeString(out, o.toString());
+                break;
+        }
+        return true;
+
+    }
+
+    /**
+     * Read an entry.
+     * @return An item, or {@code null} if the file belongs to another key (hash collision)
+     */
+    private static Cache.Item readEntry(DataInputStream in, String key) throws IOException, JSONException {
+
+        if (in.readInt() != ENTRY_MAGIC) {
+            throw new IOException("Unknown entry format");
+        }
+        if (!key.equals(readString(in))) {
+            return null;
+        }
+        long expires = in.readLong();
+        long size = in.readLong();
+        String etag = readString(in);
+        String lastModified = readString(in);
+        byte type = in.readByte();
+
+        Object o;
+        switch (type) {
+            case TYPE_STRING:
+                o = readString(in);
+                break;
+            case TYPE_BYTES:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                o = bytes;
+                break;
+            case TYPE_JSON_OBJECT:
+                o = new JSONObject(readString(in));
+                break;
+            case TYPE_JSON_ARRAY:
+                o = new JSONArray(readString(in));
+                break;
+            case TYPE_STRING_LIST:
+                int count = in.readInt();
+                LinkedList<String> list = new LinkedList<String>();
+                for (int i = 0; i < count; i++) {
+                    list.add(readString(in));
+                }
+                o = list;
+                break;
+            default:
+                throw new IOException("Unknown entry type " + type);
+        }
+
+        Cache.Item item = new Cache.Item(o, expires - System.currentTimeMillis());
+        item.size = size;
+        item.etag = etag;
+        item.lastModified = lastModified;
+        return item;
+
+    }
+
+    private static boolean isStringList(List<?> list) {
+        for (Object o : list) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Strings are written as length prefixed UTF-8, as {@link DataOutputStream#writeUTF(String)}
+     * is limited to 64kb. A length of -1 denotes {@code null}.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(ENCODING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, ENCODING);
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final long expires;
+        final long size;
+
+        Entry(long expires, long size) {
+            this.expires = expires;
+            this.size = size;
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.network.impl;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.shopgun.android.sdk.network.Delivery;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.Response;
+
+import java.util.ArrayList;
+
+/**
+ * A {@link Delivery} that gathers the responses arriving within one frame, and delivers them
+ * in a single pass on the main thread, in the order they arrived.
+ *
+ * <p>This is useful when a single user action, e.g. opening a catalog, results in a burst of
+ * responses. The UI can then be updated once per frame, rather than once per response.
+ * On devices prior to Jelly Bean, responses are gathered for {@link #FRAME_INTERVAL} milliseconds.</p>
+ *
+ * <p>To use it, pass an instance to {@link com.shopgun.android.sdk.ShopGun.Builder#setDelivery(Delivery)}.</p>
+ */
+public class FrameBatchDelivery implements Delivery {
+
+    /** Time to gather responses, when {@link Choreographer} isn't available */
+    public static final long FRAME_INTERVAL = 16;
+
+    private final Handler mHandler;
+
+    private final Object mLock = new Object();
+
+    /** Runnables waiting for the next frame */
+    private ArrayList<Runnable> mPending = new ArrayList<Runnable>();
+    private ArrayList<Runnable> mRunning = new ArrayList<Runnable>();
+    private boolean mScheduled = false;
+
+    /**
+     * Creates a new delivery, that delivers responses to the UI thread.
+     */
+    public FrameBatchDelivery() {
+        this(new Handler(Looper.getMainLooper()));
+    }
+
+    /**
+     * Creates a new delivery, that delivers responses to the thread of the given handler.
+     * @param handler {@link Handler} to deliver responses on
+     */
+    public FrameBatchDelivery(Handler handler) {
+        mHandler = handler;
+    }
+
+    public void postResponse(Request<?> request, Response<?> response) {
+
+        if (request.isCanceled()) {
+            if (!response.intermediate) {
+                request.finish("cancelled-at-delivery");
+            }
+        } else if (request.getDelivery() != null && !FrameBatchDelivery.this.equals(request.getDelivery())) {
+            // If there isn't a check, you'll end up in an infinite loop
+            request.addEvent("post-to-custom-delivery");
+            request.getDelivery().postResponse(request, response);
+        } else {
+            request.addEvent("post-response-to-frame");
+            post(new DeliveryRunnable(request, response));
+        }
+
+    }
+
+    /**
+     * Run the given runnable on the delivery thread, with the next batch of responses.
+     * @param runnable A runnable
+     */
+    public void post(Runnable runnable) {
+        boolean schedule;
+        synchronized (mLock) {
+            mPending.add(runnable);
+            schedule = !mScheduled;
+            mScheduled = true;
+        }
+        if (schedule) {
+            // The Choreographer must be used from the thread of the handler
+            mHandler.post(mScheduleFrame);
+        }
+    }
+
+    private void flush() {
+
+        ArrayList<Runnable> batch;
+        synchronized (mLock) {
+            // Swap the lists, anything posted while delivering goes to the next frame
+            batch = mPending;
+            mPending = mRunning;
+            mRunning = batch;
+            mScheduled = false;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).run();
+        }
+        batch.clear();
+
+    }
+
+    private final Runnable mScheduleFrame = new Runnable() {
+        public void run() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                FrameCallback.post(FrameBatchDelivery.this);
+            } else {
+                mHandler.postDelayed(mFlush, FRAME_INTERVAL);
+            }
+        }
+    };
+
+    private final Runnable mFlush = new Runnable() {
+        public void run() {
+            flush();
+        }
+    };
+
+    /** Kept in a separate class, so older devices never load {@link Choreographer} */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallback implements Choreographer.FrameCallback {
+
+        private final FrameBatchDelivery mDelivery;
+
+        private FrameCallback(FrameBatchDelivery delivery) {
+            mDelivery = delivery;
+        }
+
+        static void post(FrameBatchDelivery delivery) {
+            Choreographer.getInstance().postFrameCallback(new FrameCallback(delivery));
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mDelivery.flush();
+        }
+
+    }
+
+}
@@ -55,7 +55,9 @@ public class HandlerDelivery implements Delivery {
     public void postResponse(Request<?> request, Response<?> response) {
 
         if (request.isCanceled()) {
-            request.finish("cancelled-at-delivery");
+            if (!response.intermediate) {
+                request.finish("cancelled-at-delivery");
+            }
         } else if (request.getDelivery() != null && !HandlerDelivery.this.equals(request.getDelivery())) {
             // If there isn't a check, you'll end up in an infinite loop
             request.addEvent("post-to-custom-delivery");
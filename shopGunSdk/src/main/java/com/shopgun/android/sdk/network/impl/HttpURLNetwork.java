@@ -21,7 +21,6 @@ import com.shopgun.android.sdk.network.HttpStack;
 import com.shopgun.android.sdk.network.RedirectProtocol;
 import com.shopgun.android.sdk.network.Request;
 import com.shopgun.android.sdk.utils.HeaderUtils;
-import com.shopgun.android.sdk.utils.Utils;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -56,7 +55,7 @@ public class HttpURLNetwork implements HttpStack {
     }
 
     public HttpResponse performNetworking(Request<?> request) throws IOException {
-        String tmpUrl = Utils.requestToUrlAndQueryString(request);
+        String tmpUrl = request.getCacheKey();
         ArrayList<URL> urls = new ArrayList<URL>();
         urls.add(new URL(tmpUrl));
         return performNetworking(request, urls);
@@ -64,6 +63,15 @@ public class HttpURLNetwork implements HttpStack {
 
     private HttpResponse performNetworking(Request<?> request, ArrayList<URL> urls) throws IOException {
 
+        if (request.isCanceled()) {
+            throw new IOException("Request cancelled");
+        }
+
+        // Every redirect shares the time left until the deadline
+        if (request.isDeadlineExceeded()) {
+            throw new IOException("Deadline exceeded");
+        }
+
         URL url = urls.get(urls.size()-1);
         HttpURLConnection connection = openConnection(request, url);
         HttpResponse response = getHttpResponse(connection);
@@ -92,10 +100,19 @@ public class HttpURLNetwork implements HttpStack {
 
     private HttpURLConnection openConnection(Request<?> request, URL url) throws IOException {
 
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        // Cancelling the request closes the connection, and unblocks the dispatcher using it.
+        // The network clears this, once the response body is read.
+        request.setAbortable(new Request.Abortable() {
+            public void abort() {
+                connection.disconnect();
+            }
+        });
 
-        connection.setConnectTimeout(request.getTimeOut());
-        connection.setReadTimeout(request.getTimeOut());
+        int timeout = request.getConnectionTimeOut();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
         connection.setUseCaches(false);
         connection.setDoInput(true);
         connection.setInstanceFollowRedirects(false);
@@ -25,17 +25,22 @@ import com.shopgun.android.sdk.network.Request;
 import com.shopgun.android.sdk.network.Response;
 import com.shopgun.android.sdk.network.Response.Listener;
 import com.shopgun.android.sdk.network.ShopGunError;
+import com.shopgun.android.sdk.network.StreamingRequest;
 import com.shopgun.android.sdk.utils.Utils;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-public class JsonArrayRequest extends JsonRequest<JSONArray> {
+public class JsonArrayRequest extends JsonRequest<JSONArray> implements StreamingRequest {
 
     /**
      * The default limit for API calls.<br>
@@ -45,6 +50,20 @@ public class JsonArrayRequest extends JsonRequest<JSONArray> {
     private static final String ERROR_LIMIT_NEGATIVE = "Limit may not be negative";
     private static final long CACHE_TTL = TimeUnit.MINUTES.toMillis(3);
 
+    /** The filter rewritten to only contain the ids missing in cache, or {@code null} */
+    private String mPartialFilter;
+    /** The original value of the rewritten filter */
+    private String mPartialFilterValue;
+    /** The ids of the original filter, in the order requested */
+    private List<String> mPartialIds;
+    /** The items found in cache, by id */
+    private Map<String, JSONObject> mPartialCached;
+    /** Indication that the last response was only fetched for the ids missing in cache */
+    private boolean mPartialResponse = false;
+    /** The array read from the connection, until it's handed to {@link #parseNetworkResponse(NetworkResponse)} */
+    private JSONArray mStreamResult;
+    private Exception mStreamError;
+
     public JsonArrayRequest(String url, Listener<JSONArray> listener) {
         super(Method.GET, url, null, listener);
         init();
@@ -70,23 +89,120 @@ public class JsonArrayRequest extends JsonRequest<JSONArray> {
         setLimit(DEFAULT_LIMIT);
     }
 
+    /**
+     * Returns true if some of the items in the id filter was found in cache, and the request
+     * have been rewritten to only fetch the missing items.
+     * @return {@code true} if there is a partial cache hit, else {@code false}
+     */
+    boolean hasPartialCacheHit() {
+        return mPartialFilter != null;
+    }
+
+    /**
+     * Rewrite the filter to only fetch the missing ids. The items found in cache are merged with the
+     * response, once it arrives.
+     */
+    void setPartialCacheHit(String filter, List<String> ids, Map<String, JSONObject> cached, List<String> missing) {
+        // The request may have been added again, e.g. after a session error, before the filter was restored
+        restorePartialFilter();
+        addEvent("partial-cache-hit-" + cached.size() + "-of-" + ids.size());
+        mPartialFilter = filter;
+        mPartialFilterValue = getParameters().get(filter);
+        mPartialIds = ids;
+        mPartialCached = cached;
+        getParameters().put(filter, TextUtils.join(",", missing));
+    }
+
+    /**
+     * Put back the filter rewritten by {@link #setPartialCacheHit(String, List, Map, List)}, and forget the
+     * items found in cache.
+     */
+    private void restorePartialFilter() {
+        if (mPartialFilter != null) {
+            getParameters().put(mPartialFilter, mPartialFilterValue);
+            mPartialFilter = null;
+            mPartialFilterValue = null;
+            mPartialIds = null;
+            mPartialCached = null;
+        }
+    }
+
+    @Override
+    protected void resetstate() {
+        super.resetstate();
+        restorePartialFilter();
+        mPartialResponse = false;
+    }
+
+    @Override
+    public synchronized Request finish(String reason) {
+        // The request may fail, or be cancelled, before the response is parsed
+        restorePartialFilter();
+        return super.finish(reason);
+    }
+
+    @Override
+    protected boolean isPartialResponse() {
+        return mPartialResponse;
+    }
+
+    /**
+     * Read a successful response directly from the connection, so the raw bytes, and the string they
+     * would be decoded to, are never held in memory. The items are cached, and merged with a partial
+     * cache hit in {@link #parseNetworkResponse(NetworkResponse)}, just as a buffered response.
+     */
+    public void parseNetworkStream(InputStream inputStream, String encoding) throws IOException {
+        mStreamResult = null;
+        mStreamError = null;
+        try {
+            mStreamResult = JsonStreamHelper.readArray(inputStream, encoding);
+        } catch (JSONException e) {
+            mStreamError = e;
+        } catch (RuntimeException e) {
+            // JsonReader throws IllegalStateException on unexpected tokens
+            mStreamError = e;
+        }
+    }
+
     @Override
     protected Response<JSONArray> parseNetworkResponse(NetworkResponse response) {
 
+        // Restore the original filter, so the merged list is cached for the original request
+        List<String> partialIds = mPartialIds;
+        Map<String, JSONObject> partialCached = mPartialCached;
+        mPartialResponse = partialIds != null;
+        restorePartialFilter();
+
+        JSONArray streamResult = mStreamResult;
+        Exception streamError = mStreamError;
+        mStreamResult = null;
+        mStreamError = null;
+        if (response.streamed && streamError != null) {
+            return Response.fromError(new ParseError(streamError, JSONArray.class));
+        }
+
         String jsonString = "";
         try {
-            try {
-                jsonString = new String(response.data, getParamsEncoding());
-            } catch (UnsupportedEncodingException e) {
-                jsonString = new String(response.data);
+            if (!response.streamed) {
+                try {
+                    jsonString = new String(response.data, getParamsEncoding());
+                } catch (UnsupportedEncodingException e) {
+                    jsonString = new String(response.data);
+                }
             }
 
             Response<JSONArray> r = null;
             if (Utils.isSuccess(response.statusCode)) {
-                // Parse into array if it's successful
-                JSONArray jArray = new JSONArray(jsonString);
-                r = Response.fromSuccess(jArray, getCache());
-                JsonCacheHelper.cacheJSONArray(this, r.result);
+                // Parse into array if it's successful, unless it was parsed while reading from the connection
+                JSONArray jArray = response.streamed ? streamResult : new JSONArray(jsonString);
+                if (partialIds != null) {
+                    addEvent("merging-partial-cache-hit");
+                    jArray = JsonCacheHelper.mergePartialCacheHit(this, jArray, partialIds, partialCached);
+                    r = Response.fromSuccess(jArray, getCache());
+                } else {
+                    r = Response.fromSuccess(jArray, getCache());
+                    JsonCacheHelper.cacheJSONArray(this, r.result);
+                }
 
             } else {
                 // Parse into object if it failed.
@@ -26,15 +26,18 @@ import com.shopgun.android.sdk.network.Cache.Item;
 import com.shopgun.android.sdk.network.Request;
 import com.shopgun.android.sdk.network.Response;
 import com.shopgun.android.sdk.utils.SgnJson;
-import com.shopgun.android.sdk.utils.Utils;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -56,9 +59,14 @@ public class JsonCacheHelper {
 
     public static Response<JSONArray> getJSONArray(Request<?> r, Cache c) {
 
+        if (r instanceof JsonArrayRequest && ((JsonArrayRequest) r).hasPartialCacheHit()) {
+            // The request have already been rewritten to only fetch the items missing in cache
+            return null;
+        }
+
         JSONArray jArray = new JSONArray();
         // Check if we've previously done this exact call
-        Cache.Item cacheList = c.get(Utils.requestToUrlAndQueryString(r));
+        Cache.Item cacheList = c.get(r.getCacheKey());
         if (cacheList != null && cacheList.object instanceof LinkedList<?>) {
 
             LinkedList<?> cacheListLinkedList = (LinkedList<?>) cacheList.object;
@@ -80,11 +88,11 @@ public class JsonCacheHelper {
 
         // Lets try to see if it's possible to create a response from
         // previously cached items
-        Set<String> keys = r.getParameters().keySet();
-        boolean hasFilter = keys.contains(Parameters.CATALOG_IDS) ||
-                keys.contains(Parameters.DEALER_IDS) ||
-                keys.contains(Parameters.OFFER_IDS) ||
-                keys.contains(Parameters.STORE_IDS);
+        Map<String, String> params = r.getParameters();
+        boolean hasFilter = params.containsKey(Parameters.CATALOG_IDS) ||
+                params.containsKey(Parameters.DEALER_IDS) ||
+                params.containsKey(Parameters.OFFER_IDS) ||
+                params.containsKey(Parameters.STORE_IDS);
 
         if (!hasFilter) {
             // Nothing to work with
@@ -95,8 +103,12 @@ public class JsonCacheHelper {
 
         // if last element is a type, then we'll expect a list
         String type = path[path.length - 1];
+        String filter = getFilterName(type);
+        if (filter == null) {
+            return null;
+        }
 
-        Set<String> ids = getIdsFromFilter(type, r.getParameters());
+        List<String> ids = getIdsFromFilter(filter, r.getParameters());
 
         // No ids? no catchable items...
         if (ids.size() == 0) {
@@ -104,22 +116,81 @@ public class JsonCacheHelper {
         }
 
         // Get all possible items requested from cache
+        jArray = new JSONArray();
+        Map<String, JSONObject> cached = new HashMap<String, JSONObject>();
+        List<String> missing = new ArrayList<String>();
         for (String id : ids) {
             String ern = buildErn(type, id);
             Cache.Item cacheId = c.get(ern);
-            if (cacheId != null) {
+            if (cacheId != null && cacheId.object instanceof JSONObject) {
                 jArray.put(cacheId.object);
+                cached.put(id, (JSONObject) cacheId.object);
+            } else {
+                missing.add(id);
             }
         }
 
         // If cache had ALL items, then return the list.
-        if (jArray.length() == ids.size()) {
+        if (missing.isEmpty()) {
             return Response.fromSuccess(jArray, null);
         }
 
+        // If cache had SOME items, then only fetch the missing ones. This requires the first page,
+        // as the API would apply the offset to the smaller set of ids. Stale-while-revalidate requests
+        // are left alone, so the expired list can still be delivered, and then refreshed in full
+        if (!cached.isEmpty() && r instanceof JsonArrayRequest && r.getMethod() == Request.Method.GET &&
+                isFirstPage(r) && !r.isStaleWhileRevalidate()) {
+            ((JsonArrayRequest) r).setPartialCacheHit(filter, ids, cached, missing);
+        }
+
         return null;
     }
 
+    /**
+     * Merge a response containing the items missing in cache, with the items found in cache in
+     * {@link #getJSONArray(Request, Cache)}. The fetched items are added to the cache, and the merged
+     * list is cached for the original request.
+     * @param r A request, with the original filter restored
+     * @param fetched The items returned by the API
+     * @param ids The ids of the original filter, in the order requested
+     * @param cached The items found in cache, by id
+     * @return A merged list of items, in the order of the ids
+     */
+    public static JSONArray mergePartialCacheHit(Request<?> r, JSONArray fetched, List<String> ids, Map<String, JSONObject> cached) {
+
+        Map<String, JSONObject> fetchedById = new HashMap<String, JSONObject>(fetched.length());
+        for (int i = 0; i < fetched.length(); i++) {
+            JSONObject o = fetched.optJSONObject(i);
+            if (o != null) {
+                cacheJSONObject(r, o);
+                String id = o.optString(SgnJson.ID, null);
+                if (id != null) {
+                    fetchedById.put(id, o);
+                }
+            }
+        }
+
+        JSONArray merged = new JSONArray();
+        LinkedList<String> ernlist = new LinkedList<String>();
+        for (String id : ids) {
+            JSONObject o = cached.get(id);
+            if (o == null) {
+                o = fetchedById.get(id);
+            }
+            if (o != null) {
+                merged.put(o);
+                String ern = o.optString(SgnJson.ERN, null);
+                if (ern != null) {
+                    ernlist.add(ern);
+                }
+            }
+        }
+
+        cacheErnList(r, ernlist);
+        return merged;
+
+    }
+
     public static Response<JSONObject> getJSONObject(Request<?> r, Cache cache) {
 
         String url = r.getUrl();
@@ -173,11 +244,23 @@ public class JsonCacheHelper {
             SgnLog.e(TAG, "", e);
         }
 
+        cacheErnList(r, ernlist);
+
+    }
+
+    /**
+     * Cache the list of ERN's returned by a request, so the list can later be rebuilt from the
+     * cached objects of each ERN.
+     * @param r The request that returned the list
+     * @param ernlist The ERN's, in the order returned
+     */
+    public static void cacheErnList(Request<?> r, LinkedList<String> ernlist) {
+
         if (ernlist.isEmpty()) {
             return;
         }
 
-        r.getCache().put(Utils.requestToUrlAndQueryString(r), new Cache.Item(ernlist, r.getCacheTTL()));
+        r.getCache().put(r.getCacheKey(), new Cache.Item(ernlist, r.getCacheTTL()));
 
     }
 
@@ -197,14 +280,38 @@ public class JsonCacheHelper {
         return null;
     }
 
-    private static Set<String> getIdsFromFilter(String filterName, Map<String, String> apiParams) {
+    private static boolean isFirstPage(Request<?> r) {
+        String offset = r.getParameters().get(Parameters.OFFSET);
+        return offset == null || "0".equals(offset);
+    }
+
+    /**
+     * Get the name of the filter parameter for a list type, e.g. 'store_ids' for 'stores'
+     * @param type A list type
+     * @return The name of the filter, or {@code null} if the type can't be filtered by id
+     */
+    private static String getFilterName(String type) {
+        if (type.length() < 2) {
+            return null;
+        }
+        String filter = type.substring(0, type.length() - 1) + "_ids";
+        if (Parameters.CATALOG_IDS.equals(filter) || Parameters.DEALER_IDS.equals(filter) ||
+                Parameters.OFFER_IDS.equals(filter) || Parameters.STORE_IDS.equals(filter)) {
+            return filter;
+        }
+        return null;
+    }
+
+    private static List<String> getIdsFromFilter(String filterName, Map<String, String> apiParams) {
 
         String tmp = apiParams.get(filterName);
-        Set<String> list = new HashSet<String>();
+        // Keep the requested order, but skip duplicates
+        Set<String> list = new LinkedHashSet<String>();
         if (tmp != null) {
             Collections.addAll(list, TextUtils.split(tmp, ","));
         }
-        return list;
+        list.remove("");
+        return new ArrayList<String>(list);
     }
 
     private static String buildErn(String type, String id) {
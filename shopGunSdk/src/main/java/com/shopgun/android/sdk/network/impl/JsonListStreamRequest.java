@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network.impl;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.api.Parameters;
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.Response;
+import com.shopgun.android.sdk.network.Response.Listener;
+import com.shopgun.android.sdk.network.ShopGunError;
+import com.shopgun.android.sdk.network.StreamingRequest;
+import com.shopgun.android.sdk.utils.Utils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request for a list endpoint, that parses the response directly from the connection
+ * into model objects, one element at a time. This avoids holding the raw bytes, the string
+ * and the complete {@link JSONArray} of a large response in memory at once.
+ *
+ * <p>Each element is still added to the cache by its ERN, just like {@link JsonArrayRequest}.
+ * On devices prior to Honeycomb the response is buffered, and parsed the usual way.</p>
+ *
+ * <pre>
+ * {@code
+ * Request<?> r = new JsonListStreamRequest<Offer>(Endpoints.OFFER_LIST, listener) {
+ *     protected Offer parse(JSONObject object) {
+ *         return Offer.fromJSON(object);
+ *     }
+ * };
+ * }
+ * </pre>
+ *
+ * @param <T> The type of model object in the list
+ */
+public abstract class JsonListStreamRequest<T> extends JsonRequest<List<T>> implements StreamingRequest {
+
+    public static final String TAG = Constants.getTag(JsonListStreamRequest.class);
+
+    private static final long CACHE_TTL = TimeUnit.MINUTES.toMillis(3);
+
+    private List<T> mStreamResult;
+    private Exception mStreamError;
+
+    public JsonListStreamRequest(String url, Listener<List<T>> listener) {
+        super(url, listener);
+        getParameters().put(Parameters.OFFSET, String.valueOf(0));
+        getParameters().put(Parameters.LIMIT, String.valueOf(JsonArrayRequest.DEFAULT_LIMIT));
+    }
+
+    /**
+     * Convert a single element of the response into a model object.
+     * <p>This is called on the network thread, for both network and cache responses.</p>
+     * @param object A {@link JSONObject} from the response
+     * @return A model object, or {@code null} to skip the element
+     */
+    protected abstract T parse(JSONObject object);
+
+    public void parseNetworkStream(InputStream inputStream, String encoding) throws IOException {
+
+        mStreamResult = null;
+        mStreamError = null;
+
+        List<T> list = new ArrayList<T>();
+        LinkedList<String> erns = new LinkedList<String>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, encoding));
+
+        try {
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                JSONObject o = JsonStreamHelper.readObject(reader);
+                String ern = JsonCacheHelper.cacheJSONObject(this, o);
+                if (ern != null) {
+                    erns.add(ern);
+                }
+                T item = parse(o);
+                if (item != null) {
+                    list.add(item);
+                }
+            }
+            reader.endArray();
+
+        } catch (JSONException e) {
+            mStreamError = e;
+            return;
+        } catch (RuntimeException e) {
+            // JsonReader throws IllegalStateException on unexpected tokens, models may throw too
+            mStreamError = e;
+            return;
+        }
+
+        JsonCacheHelper.cacheErnList(this, erns);
+        mStreamResult = list;
+
+    }
+
+    @Override
+    protected Response<List<T>> parseNetworkResponse(NetworkResponse response) {
+
+        if (response.streamed) {
+            if (mStreamError != null) {
+                return Response.fromError(new ParseError(mStreamError, List.class));
+            }
+            return Response.fromSuccess(mStreamResult, getCache());
+        }
+
+        String jsonString;
+        try {
+            jsonString = new String(response.data, getParamsEncoding());
+        } catch (UnsupportedEncodingException e) {
+            jsonString = new String(response.data);
+        }
+
+        try {
+
+            if (Utils.isSuccess(response.statusCode)) {
+                JSONArray jArray = new JSONArray(jsonString);
+                JsonCacheHelper.cacheJSONArray(this, jArray);
+                return Response.fromSuccess(toList(jArray), getCache());
+            } else {
+                ShopGunError e = ShopGunError.fromJSON(new JSONObject(jsonString));
+                return Response.fromError(e);
+            }
+
+        } catch (Exception e) {
+            return Response.fromError(new ParseError(e, List.class));
+        }
+
+    }
+
+    @Override
+    protected Response<List<T>> parseCache(Cache c) {
+        Response<JSONArray> cache = JsonCacheHelper.getJSONArray(this, c);
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return Response.fromSuccess(toList(cache.result), null);
+        } catch (RuntimeException e) {
+            // Bad cache data, let the network handle it
+            return null;
+        }
+    }
+
+    private List<T> toList(JSONArray array) {
+        List<T> list = new ArrayList<T>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject o = array.optJSONObject(i);
+            if (o != null) {
+                T item = parse(o);
+                if (item != null) {
+                    list.add(item);
+                }
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public long getCacheTTL() {
+        return CACHE_TTL;
+    }
+
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network.impl;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.JsonReader;
+
+import com.shopgun.android.sdk.Constants;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Helper for reading JSON from a {@link JsonReader} into {@link JSONObject} and {@link JSONArray},
+ * so that a large response can be pulled one element at a time, and handed to the existing
+ * {@code fromJSON()} methods of the model objects.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class JsonStreamHelper {
+
+    public static final String TAG = Constants.getTag(JsonStreamHelper.class);
+
+    private JsonStreamHelper() {
+        // private
+    }
+
+    /**
+     * Read a complete array from a stream, e.g. the body of a list response.
+     * @param inputStream A stream, it's not closed by this method
+     * @param encoding The encoding of the stream
+     * @return A {@link JSONArray}
+     * @throws IOException If reading fails
+     * @throws JSONException If the value can't be represented in JSON
+     */
+    public static JSONArray readArray(InputStream inputStream, String encoding) throws IOException, JSONException {
+        return readArray(new JsonReader(new InputStreamReader(inputStream, encoding)));
+    }
+
+    /**
+     * Read the next value from the reader.
+     * @param reader A reader
+     * @return A {@link JSONObject}, {@link JSONArray}, {@link String}, {@link Number},
+     *          {@link Boolean} or {@link JSONObject#NULL}
+     * @throws IOException If reading fails
+     * @throws JSONException If the value can't be represented in JSON
+     */
+    public static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return toNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected token " + reader.peek());
+        }
+    }
+
+    /**
+     * Read the next object from the reader.
+     * @param reader A reader, positioned at the beginning of an object
+     * @return A {@link JSONObject}
+     * @throws IOException If reading fails
+     * @throws JSONException If the value can't be represented in JSON
+     */
+    public static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            object.put(name, readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    /**
+     * Read the next array from the reader.
+     * @param reader A reader, positioned at the beginning of an array
+     * @return A {@link JSONArray}
+     * @throws IOException If reading fails
+     * @throws JSONException If the value can't be represented in JSON
+     */
+    public static JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    /**
+     * Mimic the number types that {@link org.json.JSONTokener} produces
+     */
+    private static Number toNumber(String number) throws JSONException {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                long l = Long.parseLong(number);
+                if (Integer.MIN_VALUE <= l && l <= Integer.MAX_VALUE) {
+                    return (int) l;
+                }
+                return l;
+            } catch (NumberFormatException e) {
+                // Too large for a long, fall through to double
+            }
+        }
+        try {
+            return Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid number " + number);
+        }
+    }
+
+}
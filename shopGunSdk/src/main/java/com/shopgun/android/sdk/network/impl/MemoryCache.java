@@ -14,55 +14,86 @@
  * limitations under the License.
  ******************************************************************************/
 
+
 package com.shopgun.android.sdk.network.impl;
 
 import com.shopgun.android.sdk.Constants;
 import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.NetworkUtils;
+import com.shopgun.android.sdk.network.PeekableCache;
 import com.shopgun.android.sdk.network.Request;
-import com.shopgun.android.sdk.network.Request.Method;
 import com.shopgun.android.sdk.network.Response;
 
-import java.util.Collections;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class MemoryCache implements Cache {
+/**
+ * An in-memory {@link Cache}, bounded by the number of bytes retained by the cached items.
+ *
+ * <p>The cache is split into a number of segments, each with its own lock and LRU order, so
+ * dispatcher threads only contend when they access keys in the same segment. Each segment is
+ * given an equal share of the byte limit, and evicts its least recently used items when full.
+ * An item larger than the share of a single segment (1/16 of the limit) is never cached, so the
+ * limit must be at least 16 times the size of the largest response that should be kept in memory.</p>
+ *
+ * <p>The size of an item is {@link Cache.Item#size}, if set. Otherwise the size is estimated
+ * from the cached object once, when the item is added, see {@link #estimateSize(Object)}.</p>
+ */
+public class MemoryCache implements PeekableCache {
 
     public static final String TAG = Constants.getTag(MemoryCache.class);
 
-    /** On average we've measured a Cache.Item from the ETA API to be around 4kb */
-    private static final int AVG_ITEM_SIZE = 4096;
-
-    /** Max cache size - init to 1mb */
-    private int mMaxItems = 256;
+    /** Number of segments, must be a power of two */
+    private static final int SEGMENT_COUNT = 16;
 
-    /** Perceent of cache to remove on cleanup */
-    private int mPercentToClean = 20;
+    /** Approximate overhead of an object header, and a reference to it */
+    private static final int OBJECT_OVERHEAD = 16;
 
-    private Map<String, Item> mCache;
+    /** Approximate overhead of a map entry, including the key and the {@link Cache.Item} */
+    private static final int ENTRY_OVERHEAD = 64;
 
-    public MemoryCache() {
+    private final Segment[] mSegments = new Segment[SEGMENT_COUNT];
+    private volatile long mMaxSize;
 
-        setLimit(Runtime.getRuntime().maxMemory() / 8);
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mPutCount = new AtomicLong();
+    private final AtomicLong mEvictionCount = new AtomicLong();
 
-        float loadFactor = 1.5f; // Quicker lookup times
-        boolean accessOrder = true; // Enable LRU ordering
-        mCache = Collections.synchronizedMap(new LinkedHashMap<String, Item>(mMaxItems, loadFactor, accessOrder));
+    public MemoryCache() {
+        this(Runtime.getRuntime().maxMemory() / 8);
+    }
 
+    /**
+     * Create a new cache.
+     * @param maxSize The limit in bytes
+     */
+    public MemoryCache(long maxSize) {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            mSegments[i] = new Segment();
+        }
+        setLimit(maxSize);
     }
 
     /**
      * Set the percentage of cache to clean out when memory limit is hit
      * @param percentToClean A percentage between 0 and 100 (default is 20)
+     * @deprecated The cache now evicts the least recently used items, until it's within the limit
      */
+    @Deprecated
     public void setCleanLimit(int percentToClean) {
         if (percentToClean <= 0 || 100 <= percentToClean) {
             throw new IllegalArgumentException("Percent a number between 0-100");
         }
-        mPercentToClean = percentToClean;
     }
 
     /**
@@ -73,71 +104,245 @@ public class MemoryCache implements Cache {
         if (maxMemLimit > Runtime.getRuntime().maxMemory()) {
             throw new IllegalArgumentException("maxMemLimit cannot be more than max heap size");
         }
-        mMaxItems = (int) (maxMemLimit / AVG_ITEM_SIZE);
-        SgnLog.v(TAG, "New memory limit: " + maxMemLimit / 1024 + "kb (approx " + mMaxItems + " items)");
+        if (maxMemLimit <= 0) {
+            throw new IllegalArgumentException("maxMemLimit must be positive");
+        }
+        mMaxSize = maxMemLimit;
+        long segmentLimit = maxMemLimit / SEGMENT_COUNT;
+        for (Segment s : mSegments) {
+            s.setLimit(segmentLimit);
+        }
+        SgnLog.v(TAG, "New memory limit: " + maxMemLimit / 1024 + "kb");
     }
 
     public void put(Request<?> request, Response<?> response) {
 
         // If the request is cacheable
-        if (request.getMethod() == Method.GET && request.isCacheable() && !request.isCacheHit() && response.cache != null) {
+        if (NetworkUtils.shouldCache(request, response)) {
 
             request.addEvent("add-response-to-cache");
-            synchronized (MemoryCache.class) {
-                mCache.putAll(response.cache);
-                checkSize();
+            for (Entry<String, Cache.Item> e : response.cache.entrySet()) {
+                put(e.getKey(), e.getValue());
             }
 
         }
 
     }
 
-    private void checkSize() {
+    /**
+     * Add a single item to the cache, e.g. an item promoted from a slower cache.
+     * @param key A key
+     * @param item The item to add
+     */
+    public void put(String key, Cache.Item item) {
+        if (item.size <= 0) {
+            item.size = ENTRY_OVERHEAD + estimateSize(item.object);
+        }
+        mPutCount.incrementAndGet();
+        segmentFor(key).put(key, item);
+    }
 
-        int size = mCache.size();
+    public Cache.Item get(String key) {
 
-        if (size > mMaxItems) {
+        Cache.Item c = segmentFor(key).get(key);
+        if (c == null || c.isExpired()) {
+            // Expired items are kept for revalidation, until they are evicted
+            mMissCount.incrementAndGet();
+            return null;
+        }
+        mHitCount.incrementAndGet();
+        return c;
 
-            float percentToRemove = (float) mPercentToClean / (float) 100;
-            int itemsToRemove = (int) (size * percentToRemove);
+    }
 
-            //least recently accessed item will be the first one iterated
-            Iterator<Entry<String, Cache.Item>> it = mCache.entrySet().iterator();
-            while (it.hasNext()) {
-                it.next();
-                it.remove();
-                if (itemsToRemove-- == 0) {
-                    break;
-                }
-            }
+    public Cache.Item peek(String key) {
+        return segmentFor(key).get(key);
+    }
 
-            SgnLog.d(TAG, "Cleaned " + TAG + " new size: " + mCache.size());
+    public void clear() {
+        for (Segment s : mSegments) {
+            s.clear();
+        }
+    }
 
+    /**
+     * Get the number of bytes currently retained by the cache
+     * @return A number of bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (Segment s : mSegments) {
+            size += s.getSize();
         }
+        return size;
+    }
 
+    /**
+     * Get the max number of bytes this cache may retain
+     * @return A number of bytes
+     */
+    public long getMaxSize() {
+        return mMaxSize;
     }
 
-    public Cache.Item get(String key) {
+    /**
+     * Get the number of items currently in the cache
+     * @return A number of items
+     */
+    public int getItemCount() {
+        int count = 0;
+        for (Segment s : mSegments) {
+            count += s.getItemCount();
+        }
+        return count;
+    }
 
-        synchronized (MemoryCache.class) {
+    /**
+     * Get the number of times {@link #get(String)} returned a valid item
+     * @return A count
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
 
-            Cache.Item c = mCache.get(key);
-            if (c == null) {
-                return null;
-            } else if (c.isExpired()) {
-                mCache.remove(key);
-                return null;
-            }
-            return c;
+    /**
+     * Get the number of times {@link #get(String)} returned {@code null}
+     * @return A count
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Get the number of items added to the cache
+     * @return A count
+     */
+    public long getPutCount() {
+        return mPutCount.get();
+    }
+
+    /**
+     * Get the number of items evicted to stay within the limit
+     * @return A count
+     */
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
 
+    @Override
+    public String toString() {
+        long hits = mHitCount.get();
+        long total = hits + mMissCount.get();
+        int hitRate = total == 0 ? 0 : (int) (100 * hits / total);
+        return String.format(Locale.US, "MemoryCache[size=%d, maxSize=%d, items=%d, hits=%d, misses=%d, hitRate=%d%%, evictions=%d]",
+                getSize(), mMaxSize, getItemCount(), hits, mMissCount.get(), hitRate, mEvictionCount.get());
+    }
+
+    private Segment segmentFor(String key) {
+        // Spread the bits, as String hashes of similar keys tend to only differ in the low bits
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return mSegments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * Estimate the number of bytes retained by an object in the cache. The estimate is based on the
+     * types cached by the SDK, and is deliberately cheap rather than exact.
+     * @param o An object
+     * @return An estimated number of bytes
+     */
+    public static long estimateSize(Object o) {
+
+        if (o == null) {
+            return 0;
+        } else if (o instanceof String) {
+            return OBJECT_OVERHEAD + 24 + 2 * ((String) o).length();
+        } else if (o instanceof byte[]) {
+            return OBJECT_OVERHEAD + ((byte[]) o).length;
+        } else if (o instanceof JSONObject) {
+            JSONObject json = (JSONObject) o;
+            long size = OBJECT_OVERHEAD + 48;
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                size += 32 + estimateSize(key) + estimateSize(json.opt(key));
+            }
+            return size;
+        } else if (o instanceof JSONArray) {
+            JSONArray json = (JSONArray) o;
+            long size = OBJECT_OVERHEAD + 24;
+            for (int i = 0; i < json.length(); i++) {
+                size += 4 + estimateSize(json.opt(i));
+            }
+            return size;
+        } else if (o instanceof Collection) {
+            long size = OBJECT_OVERHEAD + 24;
+            for (Object e : (Collection<?>) o) {
+                size += 24 + estimateSize(e);
+            }
+            return size;
         }
+        // Numbers, booleans, and anything we don't know
+        return OBJECT_OVERHEAD + 8;
 
     }
 
-    public void clear() {
-        synchronized (MemoryCache.class) {
-            mCache.clear();
+    private class Segment {
+
+        private final LinkedHashMap<String, Cache.Item> mItems = new LinkedHashMap<String, Cache.Item>(16, 0.75f, true);
+        private long mLimit;
+        private long mSize;
+
+        synchronized void setLimit(long limit) {
+            mLimit = limit;
+            trimToSize();
+        }
+
+        synchronized Cache.Item get(String key) {
+            return mItems.get(key);
+        }
+
+        synchronized void put(String key, Cache.Item item) {
+            if (item.size > mLimit) {
+                // Would evict everything else in the segment
+                Cache.Item old = mItems.remove(key);
+                if (old != null) {
+                    mSize -= old.size;
+                }
+                return;
+            }
+            Cache.Item old = mItems.put(key, item);
+            if (old != null) {
+                mSize -= old.size;
+            }
+            mSize += item.size;
+            trimToSize();
+        }
+
+        synchronized void clear() {
+            mItems.clear();
+            mSize = 0;
+        }
+
+        synchronized long getSize() {
+            return mSize;
+        }
+
+        synchronized int getItemCount() {
+            return mItems.size();
         }
+
+        private void trimToSize() {
+            // least recently accessed item will be the first one iterated
+            Iterator<Map.Entry<String, Cache.Item>> it = mItems.entrySet().iterator();
+            while (mSize > mLimit && it.hasNext()) {
+                mSize -= it.next().getValue().size;
+                it.remove();
+                mEvictionCount.incrementAndGet();
+            }
+        }
+
     }
 
 }
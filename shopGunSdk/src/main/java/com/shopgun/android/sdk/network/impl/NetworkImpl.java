@@ -21,12 +21,13 @@ import com.shopgun.android.sdk.log.SgnLog;
 import com.shopgun.android.sdk.network.HttpStack;
 import com.shopgun.android.sdk.network.Network;
 import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.NetworkUtils;
 import com.shopgun.android.sdk.network.Request;
 import com.shopgun.android.sdk.network.ShopGunError;
+import com.shopgun.android.sdk.network.StreamingRequest;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.util.ByteArrayBuffer;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,28 +42,79 @@ public class NetworkImpl implements Network {
 
     HttpStack mStack;
 
+    /** Pool of buffers shared by all threads performing requests on this network */
+    private final ByteArrayPool mPool;
+
     public NetworkImpl(HttpStack stack) {
+        this(stack, new ByteArrayPool());
+    }
+
+    public NetworkImpl(HttpStack stack, ByteArrayPool pool) {
         mStack = stack;
+        mPool = pool;
     }
 
-    private static byte[] entityToBytes(HttpEntity entity) throws IllegalStateException, IOException {
+    /**
+     * Get the {@link ByteArrayPool} used for reading responses, e.g. to inspect the hit rate.
+     * @return A {@link ByteArrayPool}
+     */
+    public ByteArrayPool getByteArrayPool() {
+        return mPool;
+    }
 
-        // Find best buffer size
-        int init_buf = 0 <= entity.getContentLength() ? (int) entity.getContentLength() : BUFFER_SIZE;
+    private byte[] entityToBytes(HttpEntity entity) throws IllegalStateException, IOException {
+        InputStream is = entity.getContent();
+        if (is == null) {
+            return new byte[0];
+        }
+        return streamToBytes(is, (int) entity.getContentLength(), mPool);
+    }
 
-        ByteArrayBuffer bytes = new ByteArrayBuffer(init_buf);
+    /**
+     * Read a stream into a byte array, using buffers from the given pool.
+     * @param is A stream to read, this will be closed
+     * @param contentLength The expected length of the stream, or -1 if unknown
+     * @param pool The pool to get buffers from
+     * @return The bytes read
+     * @throws IOException If reading fails
+     */
+    static byte[] streamToBytes(InputStream is, int contentLength, ByteArrayPool pool) throws IOException {
+
+        PoolingByteArrayOutputStream bytes = new PoolingByteArrayOutputStream(pool, contentLength);
+        byte[] buf = null;
+        try {
+            buf = pool.getBuf(BUFFER_SIZE);
+            int c;
+            while ((c = is.read(buf)) != -1) {
+                bytes.write(buf, 0, c);
+            }
+            return bytes.toByteArray();
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                SgnLog.d(TAG, "Error closing stream");
+            }
+            pool.returnBuf(buf);
+            bytes.close();
+        }
+
+    }
+
+    private static boolean entityToStream(StreamingRequest request, HttpEntity entity, String encoding) throws IllegalStateException, IOException {
 
         InputStream is = entity.getContent();
-        if (is == null)
-            return bytes.toByteArray();
+        if (is == null) {
+            return false;
+        }
 
-        byte[] buf = new byte[init_buf];
-        int c = -1;
-        while ((c = is.read(buf)) != -1) {
-            bytes.append(buf, 0, c);
+        try {
+            request.parseNetworkStream(is, encoding);
+            return true;
+        } finally {
+            is.close();
         }
 
-        return bytes.toByteArray();
     }
 
     public NetworkResponse performRequest(Request<?> request) throws ShopGunError {
@@ -72,20 +124,30 @@ public class NetworkImpl implements Network {
         try {
 
             HttpResponse resp = mStack.performNetworking(request);
+            request.markStage(Request.Stage.FIRST_BYTE);
+            int statusCode = resp.getStatusLine().getStatusCode();
+            boolean streamed = false;
+            int respLength;
 
             if (resp.getEntity() == null) {
                 // add 0-byte for to mock no-content
                 content = new byte[0];
+                respLength = 0;
+            } else if (NetworkUtils.isStreamable(request, statusCode)) {
+                request.addEvent("streaming-input");
+                streamed = entityToStream((StreamingRequest) request, resp.getEntity(), request.getParamsEncoding());
+                content = new byte[0];
+                respLength = (int) Math.max(0, resp.getEntity().getContentLength());
             } else {
                 request.addEvent("reading-input");
                 content = entityToBytes(resp.getEntity());
+                respLength = content.length;
             }
 
 			/*
 			 * TODO report back content and body length, to collect stats on
 			 * transferred data, to compare with MsgPack later.
 			 */
-            int respLength = content.length;
             int bodyLength = (request.getBody() == null ? 0 : request.getBody().length);
 
             request.stats(respLength, bodyLength);
@@ -94,11 +156,17 @@ public class NetworkImpl implements Network {
                 responseHeaders.put(h.getName(), h.getValue());
             }
 
-            return new NetworkResponse(resp.getStatusLine().getStatusCode(), content, responseHeaders);
+            return new NetworkResponse(statusCode, content, responseHeaders, streamed);
 
         } catch (Exception e) {
-            SgnLog.e(TAG, e.getMessage(), e);
+            if (request.isCanceled()) {
+                SgnLog.d(TAG, "Request aborted: " + e.getMessage());
+            } else {
+                SgnLog.e(TAG, e.getMessage(), e);
+            }
             throw new NetworkError(e);
+        } finally {
+            request.setAbortable(null);
         }
 
     }
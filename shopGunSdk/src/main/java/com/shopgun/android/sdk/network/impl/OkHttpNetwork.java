@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network.impl;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.network.Network;
+import com.shopgun.android.sdk.network.NetworkResponse;
+import com.shopgun.android.sdk.network.NetworkUtils;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.ShopGunError;
+import com.shopgun.android.sdk.network.StreamingRequest;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Network} implementation backed by OkHttp.
+ *
+ * <p>All requests share a single {@link ConnectionPool}, so connections
+ * (and their TLS sessions) are kept alive and reused across requests, and HTTP/2 is negotiated
+ * when supported by the device and the server. Redirects are followed by OkHttp.</p>
+ *
+ * <p>To use it, pass an instance to {@link com.shopgun.android.sdk.ShopGun.Builder#setNetwork(Network)}.</p>
+ */
+public class OkHttpNetwork implements Network {
+
+    public static final String TAG = Constants.getTag(OkHttpNetwork.class);
+
+    /** Max number of idle connections to keep in the pool */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    /** Time to keep idle connections alive */
+    private static final long KEEP_ALIVE_DURATION = TimeUnit.MINUTES.toMillis(5);
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final OkHttpClient mClient;
+
+    /** Pool of buffers shared by all threads performing requests on this network */
+    private final ByteArrayPool mPool;
+
+    public OkHttpNetwork() {
+        this(createDefaultClient());
+    }
+
+    public OkHttpNetwork(OkHttpClient client) {
+        this(client, new ByteArrayPool());
+    }
+
+    /**
+     * Create a new network, with a custom {@link OkHttpClient}. The client should be shared
+     * with the rest of the app, to get the full benefit of connection pooling.
+     * @param client An {@link OkHttpClient}
+     * @param pool A {@link ByteArrayPool} for reading responses
+     */
+    public OkHttpNetwork(OkHttpClient client, ByteArrayPool pool) {
+        if (client == null) {
+            throw new IllegalArgumentException("OkHttpClient must not be null.");
+        }
+        mClient = client;
+        mPool = pool;
+    }
+
+    private static OkHttpClient createDefaultClient() {
+        OkHttpClient client = new OkHttpClient();
+        client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION));
+        // Match the default timeout of a request, so most requests can use the client as is
+        client.setConnectTimeout(Request.CONNECTION_TIME_OUT, TimeUnit.MILLISECONDS);
+        client.setReadTimeout(Request.CONNECTION_TIME_OUT, TimeUnit.MILLISECONDS);
+        client.setWriteTimeout(Request.CONNECTION_TIME_OUT, TimeUnit.MILLISECONDS);
+        client.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        client.setFollowRedirects(true);
+        client.setFollowSslRedirects(true);
+        return client;
+    }
+
+    /**
+     * Get the {@link OkHttpClient} used by this {@link Network}
+     * @return An {@link OkHttpClient}
+     */
+    public OkHttpClient getClient() {
+        return mClient;
+    }
+
+    /**
+     * Get the {@link ByteArrayPool} used for reading responses, e.g. to inspect the hit rate.
+     * @return A {@link ByteArrayPool}
+     */
+    public ByteArrayPool getByteArrayPool() {
+        return mPool;
+    }
+
+    public NetworkResponse performRequest(Request<?> request) throws ShopGunError {
+
+        ResponseBody body = null;
+        try {
+
+            final Call call = getClient(request).newCall(createOkRequest(request));
+            // Cancelling the request cancels the call, which closes the connection
+            request.setAbortable(new Request.Abortable() {
+                public void abort() {
+                    call.cancel();
+                }
+            });
+            com.squareup.okhttp.Response resp = call.execute();
+            request.markStage(Request.Stage.FIRST_BYTE);
+
+            body = resp.body();
+            byte[] content;
+            boolean streamed = false;
+            int respLength;
+            if (body == null) {
+                // add 0-byte for to mock no-content
+                content = EMPTY_BODY;
+                respLength = 0;
+            } else if (NetworkUtils.isStreamable(request, resp.code())) {
+                request.addEvent("streaming-input");
+                ((StreamingRequest) request).parseNetworkStream(body.byteStream(), request.getParamsEncoding());
+                content = EMPTY_BODY;
+                streamed = true;
+                respLength = (int) Math.max(0, body.contentLength());
+            } else {
+                request.addEvent("reading-input");
+                content = NetworkImpl.streamToBytes(body.byteStream(), (int) body.contentLength(), mPool);
+                respLength = content.length;
+            }
+
+            int bodyLength = (request.getBody() == null ? 0 : request.getBody().length);
+            request.stats(respLength, bodyLength);
+
+            return new NetworkResponse(resp.code(), content, toHeaderMap(resp.headers()), streamed);
+
+        } catch (Exception e) {
+            if (request.isCanceled()) {
+                SgnLog.d(TAG, "Request aborted: " + e.getMessage());
+            } else {
+                SgnLog.e(TAG, e.getMessage(), e);
+            }
+            throw new NetworkError(e);
+        } finally {
+            request.setAbortable(null);
+            if (body != null) {
+                try {
+                    body.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The timeout is a property of the client, so requests with a non-default timeout (or a deadline)
+     * will get a shallow copy of the client, that still shares the connection pool and dispatcher.
+     */
+    private OkHttpClient getClient(Request<?> request) {
+        int timeout = request.getConnectionTimeOut();
+        if (mClient.getConnectTimeout() == timeout && mClient.getReadTimeout() == timeout) {
+            return mClient;
+        }
+        OkHttpClient client = mClient.clone();
+        client.setConnectTimeout(timeout, TimeUnit.MILLISECONDS);
+        client.setReadTimeout(timeout, TimeUnit.MILLISECONDS);
+        client.setWriteTimeout(timeout, TimeUnit.MILLISECONDS);
+        return client;
+    }
+
+    private static com.squareup.okhttp.Request createOkRequest(Request<?> request) {
+
+        com.squareup.okhttp.Request.Builder b = new com.squareup.okhttp.Request.Builder();
+        b.url(request.getCacheKey());
+
+        for (Map.Entry<String, String> e : request.getHeaders().entrySet()) {
+            b.header(e.getKey(), e.getValue());
+        }
+
+        switch (request.getMethod()) {
+            case POST:
+            case PUT:
+                // OkHttp requires a body for POST and PUT, so we'll send an empty one if needed
+                byte[] data = request.getBody();
+                MediaType type = request.getBodyContentType() == null ? null : MediaType.parse(request.getBodyContentType());
+                b.method(request.getMethod().toString(), RequestBody.create(type, data == null ? EMPTY_BODY : data));
+                break;
+            case DELETE:
+                b.delete();
+                break;
+            default:
+                b.get();
+                break;
+        }
+
+        return b.build();
+    }
+
+    private static Map<String, String> toHeaderMap(Headers headers) {
+        // HTTP/2 header names are lower case, so lookups must ignore case
+        Map<String, String> map = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i);
+            // Keep the first value, consistent with HttpURLNetwork
+            if (!map.containsKey(name)) {
+                map.put(name, headers.value(i));
+            }
+        }
+        return map;
+    }
+
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * A {@link ByteArrayOutputStream} that gets, and grows, its buffer through a {@link ByteArrayPool}.
+ * The buffer is returned to the pool on {@link #close()}, so always close the stream.
+ */
+public class PoolingByteArrayOutputStream extends ByteArrayOutputStream {
+
+    /** Default size of the buffer, if nothing better is known */
+    private static final int DEFAULT_SIZE = 0x1000; // 4K
+
+    private final ByteArrayPool mPool;
+
+    public PoolingByteArrayOutputStream(ByteArrayPool pool) {
+        this(pool, DEFAULT_SIZE);
+    }
+
+    /**
+     * @param pool A pool to get buffers from
+     * @param size The expected size of the data written
+     */
+    public PoolingByteArrayOutputStream(ByteArrayPool pool, int size) {
+        mPool = pool;
+        buf = mPool.getBuf(Math.max(size, DEFAULT_SIZE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        mPool.returnBuf(buf);
+        buf = null;
+        super.close();
+    }
+
+    /**
+     * Ensure that the buffer can hold {@code len} more bytes
+     */
+    private void expand(int len) {
+        if (count + len <= buf.length) {
+            return;
+        }
+        byte[] newbuf = mPool.getBuf((count + len) * 2);
+        System.arraycopy(buf, 0, newbuf, 0, count);
+        mPool.returnBuf(buf);
+        buf = newbuf;
+    }
+
+    @Override
+    public synchronized void write(byte[] buffer, int offset, int len) {
+        expand(len);
+        super.write(buffer, offset, len);
+    }
+
+    @Override
+    public synchronized void write(int oneByte) {
+        expand(1);
+        super.write(oneByte);
+    }
+
+}
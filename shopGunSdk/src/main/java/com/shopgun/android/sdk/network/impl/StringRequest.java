@@ -23,7 +23,6 @@ import com.shopgun.android.sdk.network.NetworkResponse;
 import com.shopgun.android.sdk.network.Request;
 import com.shopgun.android.sdk.network.Response;
 import com.shopgun.android.sdk.network.Response.Listener;
-import com.shopgun.android.sdk.utils.Utils;
 
 import java.io.UnsupportedEncodingException;
 
@@ -85,7 +84,7 @@ public class StringRequest extends Request<String> {
             string = new String(response.data);
         }
 
-        String url = Utils.requestToUrlAndQueryString(this);
+        String url = getCacheKey();
         Cache.Item c = new Cache.Item(string, getCacheTTL());
         getCache().put(url, c);
 
@@ -96,7 +95,7 @@ public class StringRequest extends Request<String> {
 
     @Override
     protected Response<String> parseCache(Cache c) {
-        String url = Utils.requestToUrlAndQueryString(this);
+        String url = getCacheKey();
         Cache.Item ci = c.get(url);
         if (ci != null && ci.object instanceof String) {
             return Response.fromSuccess((String) ci.object, null);
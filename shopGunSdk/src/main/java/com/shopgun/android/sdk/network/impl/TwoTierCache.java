@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network.impl;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.SgnThreadFactory;
+import com.shopgun.android.sdk.network.Cache;
+import com.shopgun.android.sdk.network.NetworkUtils;
+import com.shopgun.android.sdk.network.PeekableCache;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.Response;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A {@link Cache} combining a fast {@link MemoryCache} with a persistent {@link DiskCache}.
+ *
+ * <p>Lookups check memory first, and items found on disk are promoted to memory. New responses
+ * are added to memory immediately, and written to disk on a background {@link Executor}, so the
+ * network thread never waits for disk I/O.</p>
+ */
+public class TwoTierCache implements PeekableCache {
+
+    public static final String TAG = Constants.getTag(TwoTierCache.class);
+
+    private final MemoryCache mMemory;
+    private final DiskCache mDisk;
+    private final Executor mWriteExecutor;
+
+    public TwoTierCache(MemoryCache memory, DiskCache disk) {
+        this(memory, disk, Executors.newSingleThreadExecutor(new SgnThreadFactory()));
+    }
+
+    /**
+     * Create a new cache.
+     * @param memory The first tier
+     * @param disk The second tier
+     * @param writeExecutor The {@link Executor} to perform disk writes on
+     */
+    public TwoTierCache(MemoryCache memory, DiskCache disk, Executor writeExecutor) {
+        mMemory = memory;
+        mDisk = disk;
+        mWriteExecutor = writeExecutor;
+    }
+
+    public void put(Request<?> request, Response<?> response) {
+
+        mMemory.put(request, response);
+
+        if (NetworkUtils.shouldCache(request, response)) {
+            // Snapshot the items, the response may be modified after this call
+            final Map<String, Item> items = new HashMap<String, Item>(response.cache);
+            mWriteExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Map.Entry<String, Item> e : items.entrySet()) {
+                        mDisk.put(e.getKey(), e.getValue());
+                    }
+                }
+            });
+        }
+
+    }
+
+    public Cache.Item get(String key) {
+
+        Cache.Item item = mMemory.get(key);
+        if (item == null) {
+            item = mDisk.get(key);
+            if (item != null) {
+                mMemory.put(key, item);
+            }
+        }
+        return item;
+
+    }
+
+    public Cache.Item peek(String key) {
+        Cache.Item item = mMemory.peek(key);
+        return item != null ? item : mDisk.peek(key);
+    }
+
+    public void clear() {
+        mMemory.clear();
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDisk.clear();
+            }
+        });
+    }
+
+    public MemoryCache getMemoryCache() {
+        return mMemory;
+    }
+
+    public DiskCache getDiskCache() {
+        return mDisk;
+    }
+
+}
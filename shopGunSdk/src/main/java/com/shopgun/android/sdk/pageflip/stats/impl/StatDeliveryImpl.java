@@ -51,6 +51,8 @@ public class StatDeliveryImpl implements StatDelivery {
                 print(url, data, response, error);
             }
         });
+        // Stats must never delay the content the user is looking at
+        r.setTrafficClass(Request.TrafficClass.TELEMETRY);
         mShopgun.add(r);
         return true;
     }
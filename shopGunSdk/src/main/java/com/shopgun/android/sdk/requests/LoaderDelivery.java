@@ -22,8 +22,10 @@ import android.os.Looper;
 import com.shopgun.android.sdk.Constants;
 import com.shopgun.android.sdk.network.Delivery;
 import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.RequestQueue;
 import com.shopgun.android.sdk.network.Response;
 import com.shopgun.android.sdk.network.ShopGunError;
+import com.shopgun.android.sdk.network.impl.FrameBatchDelivery;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,11 +36,22 @@ public class LoaderDelivery<T> {
 
     Handler mHandler = new Handler(Looper.getMainLooper());
     LoaderRequest.Listener<T> mListener;
+    /** Set if the request queue batches responses per frame, the listener is then called with the batch */
+    volatile FrameBatchDelivery mFrameBatchDelivery;
 
     public LoaderDelivery(LoaderRequest.Listener<T> listener) {
         this.mListener = listener;
     }
 
+    /**
+     * Use the delivery of the given {@link RequestQueue}, if it batches responses per frame.
+     * @param requestQueue The queue performing the requests
+     */
+    public void attach(RequestQueue requestQueue) {
+        Delivery d = requestQueue == null ? null : requestQueue.getDelivery();
+        mFrameBatchDelivery = d instanceof FrameBatchDelivery ? (FrameBatchDelivery) d : null;
+    }
+
     public void deliver(Request request, Response response, T data, List<ShopGunError> errors, boolean intermediate) {
         deliverFinishRequestAndPostBack(request, response, data, errors, intermediate);
     }
@@ -51,18 +64,26 @@ public class LoaderDelivery<T> {
 
     private void deliverFinishRequestAndPostBack(Request<?> request, Response response, T data, List<ShopGunError> errors, boolean intermediate) {
         new Delivery.DeliveryRunnable(request, response).run();
-        mHandler.post(new LoaderRequestPostBackRunnable(request, data, errors, intermediate));
+        Runnable postBack = new LoaderRequestPostBackRunnable(request, response, data, errors, intermediate);
+        FrameBatchDelivery batch = mFrameBatchDelivery;
+        if (batch != null) {
+            batch.post(postBack);
+        } else {
+            mHandler.post(postBack);
+        }
     }
 
     private class LoaderRequestPostBackRunnable implements Runnable {
 
         private final Request<?> mRequest;
+        private final Response<?> mResponse;
         private final T mData;
         private final List<ShopGunError> mErrors;
         private final boolean mIntermediate;
 
-        public LoaderRequestPostBackRunnable(Request<?> request, T mData, List<ShopGunError> mErrors, boolean intermediate) {
+        public LoaderRequestPostBackRunnable(Request<?> request, Response<?> response, T mData, List<ShopGunError> mErrors, boolean intermediate) {
             this.mRequest = request;
+            this.mResponse = response;
             this.mData = mData;
             this.mErrors = mErrors;
             this.mIntermediate = intermediate;
@@ -72,8 +93,10 @@ public class LoaderDelivery<T> {
         public void run() {
 
             if (mRequest.isCanceled()) {
-                // This should finish all sub-requests in a nice manor
-                mRequest.finish("cancelled-at-delivery");
+                // This should finish all sub-requests in a nice manor, an expired response is finished by the network stage
+                if (!mResponse.intermediate) {
+                    mRequest.finish("cancelled-at-delivery");
+                }
             } else if (mIntermediate) {
                 mListener.onRequestIntermediate(mData, mErrors);
             } else {
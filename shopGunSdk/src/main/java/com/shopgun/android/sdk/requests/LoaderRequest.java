@@ -80,6 +80,7 @@ public abstract class LoaderRequest<T> extends Request<T> implements Delivery {
         }
         super.setDelivery(this);
         super.setRequestQueue(requestQueue);
+        mDelivery.attach(requestQueue);
 
         mRequests.addAll(createRequests(mData));
 
@@ -111,6 +112,11 @@ public abstract class LoaderRequest<T> extends Request<T> implements Delivery {
         throw new IllegalStateException("Custom delivery not allowed for LoaderRequests");
     }
 
+    @Override
+    public Request setStaleWhileRevalidate(boolean staleWhileRevalidate) {
+        throw new IllegalStateException("Stale-while-revalidate not allowed for LoaderRequests");
+    }
+
     @Override
     protected Response<T> parseNetworkResponse(NetworkResponse response) {
         return Response.fromError(new InternalOkError());
@@ -139,6 +145,10 @@ public abstract class LoaderRequest<T> extends Request<T> implements Delivery {
         r.setTag(getTag());
         r.setIgnoreCache(ignoreCache());
         r.setTimeOut(getTimeOut());
+        // All requests share the deadline of the loader, not a deadline each
+        r.setDeadline(getDeadline());
+        r.setTrafficClass(getTrafficClass());
+        r.setRetryPolicy(getRetryPolicy());
         r.setUseLocation(useLocation());
     }
 
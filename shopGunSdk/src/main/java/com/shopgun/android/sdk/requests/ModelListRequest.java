@@ -61,6 +61,7 @@ public abstract class ModelListRequest<T> extends JsonArrayRequest implements De
             setTag(new Object());
         }
         super.setDelivery(this);
+        mDelivery.attach(requestQueue);
         return this;
     }
 
@@ -78,6 +79,12 @@ public abstract class ModelListRequest<T> extends JsonArrayRequest implements De
         throw new RuntimeException(new IllegalAccessException("Custom delivery for model requests is not allowed"));
     }
 
+    @Override
+    protected boolean isFinalResponseRequired() {
+        // The expired response is delivered as intermediate, the listener must also get the complete response
+        return true;
+    }
+
     public abstract T parse(JSONArray response);
 
     @Override
@@ -94,8 +101,19 @@ public abstract class ModelListRequest<T> extends JsonArrayRequest implements De
 
         if (isCanceled()) {
 
-            // ignore callback
+            // ignore callback, but finish to release any requests waiting for this one
             request.addEvent("loaderRequest-have-been-canceled");
+            if (!response.intermediate) {
+                // An expired response, the request is finished by the network stage
+                request.finish("cancelled-at-delivery");
+            }
+
+        } else if (response.intermediate) {
+
+            // An expired response from cache, the refreshed response follows
+            request.addEvent("parsing-stale-response-to-model-objects");
+            T data = parse((JSONArray) response.result);
+            mDelivery.deliver(this, response, data, new ArrayList<ShopGunError>(0), true);
 
         } else if (response.isSuccess()) {
 
@@ -61,6 +61,7 @@ public abstract class ModelRequest<T> extends JsonObjectRequest implements Deliv
             setTag(new Object());
         }
         super.setDelivery(this);
+        mDelivery.attach(requestQueue);
         return this;
     }
 
@@ -78,6 +79,12 @@ public abstract class ModelRequest<T> extends JsonObjectRequest implements Deliv
         throw new RuntimeException(new IllegalAccessException("Custom delivery for model requests is not allowed"));
     }
 
+    @Override
+    protected boolean isFinalResponseRequired() {
+        // The expired response is delivered as intermediate, the listener must also get the complete response
+        return true;
+    }
+
     public abstract T parse(JSONObject response);
 
     @Override
@@ -94,8 +101,19 @@ public abstract class ModelRequest<T> extends JsonObjectRequest implements Deliv
 
         if (isCanceled()) {
 
-            // ignore callback
+            // ignore callback, but finish to release any requests waiting for this one
             request.addEvent("loaderRequest-have-been-canceled");
+            if (!response.intermediate) {
+                // An expired response, the request is finished by the network stage
+                request.finish("cancelled-at-delivery");
+            }
+
+        } else if (response.intermediate) {
+
+            // An expired response from cache, the refreshed response follows
+            request.addEvent("parsing-stale-response-to-model-object");
+            T data = parse((JSONObject) response.result);
+            mDelivery.deliver(this, response, data, new ArrayList<ShopGunError>(0), true);
 
         } else if (response.isSuccess()) {
 
@@ -34,8 +34,11 @@ public class ModelRequestTools {
     public static void copyRequestState(Request<?> from, Request<?> to) {
         to.setDebugger(from.getDebugger());
         to.setTag(from.getTag());
+        to.setTrafficClass(from.getTrafficClass());
+        to.setRetryPolicy(from.getRetryPolicy());
         to.setIgnoreCache(from.ignoreCache());
         to.setTimeOut(from.getTimeOut());
+        to.setDeadline(from.getDeadline());
         to.setUseLocation(from.useLocation());
     }
 
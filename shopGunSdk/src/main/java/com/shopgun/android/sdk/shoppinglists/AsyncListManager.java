@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.shopgun.android.sdk.shoppinglists;
+
+import android.os.Handler;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.SgnThreadFactory;
+import com.shopgun.android.sdk.log.SgnLog;
+import com.shopgun.android.sdk.model.Shoppinglist;
+import com.shopgun.android.sdk.model.ShoppinglistItem;
+import com.shopgun.android.sdk.model.User;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous variants of the {@link ListManager} methods, that keep database I/O off the calling thread.
+ *
+ * <p>All operations run one at a time, on a single database thread, in the order they were submitted.
+ * So a read submitted after a write will see the result of the write. An operation is bound to the {@link User}
+ * at the time it was submitted, even if the user logs in or out before it runs.
+ * {@link com.shopgun.android.sdk.bus.ShoppinglistEvent ShoppinglistEvents} are posted on the main thread,
+ * exactly as for the synchronous methods.</p>
+ *
+ * <p>Every method returns a {@link Future}, and takes an optional {@link Callback} that is invoked on the main thread.
+ * The {@link Future} and the {@link Callback} get the same result, or exception.</p>
+ */
+public class AsyncListManager {
+
+    public static final String TAG = Constants.getTag(AsyncListManager.class);
+
+    /** Time an idle database thread is kept alive */
+    private static final long KEEP_ALIVE = 30;
+
+    /**
+     * Callback for the result of an asynchronous operation.
+     * @param <T> The type of the result
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called on the main thread, when the operation has finished.
+         * @param result The result, or {@code null} if the operation failed
+         * @param error The exception that made the operation fail, or {@code null}
+         */
+        void onComplete(T result, Exception error);
+
+    }
+
+    private final ListManager mListManager;
+    private final Handler mHandler;
+    private final ThreadPoolExecutor mExecutor;
+
+    AsyncListManager(ListManager listManager, Handler handler) {
+        mListManager = listManager;
+        mHandler = handler;
+        // A single thread, so writes are never reordered, and never compete with each other for the database
+        mExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new SgnThreadFactory("sgn-db-"));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the synchronous {@link ListManager}, that this instance delegates to.
+     * @return A {@link ListManager}
+     */
+    public ListManager getListManager() {
+        return mListManager;
+    }
+
+    /**
+     * @see ListManager#getList(String)
+     */
+    public Future<Shoppinglist> getList(final String id, Callback<Shoppinglist> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Shoppinglist>() {
+            public Shoppinglist call() {
+                return mListManager.getList(id, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#getLists()
+     */
+    public Future<List<Shoppinglist>> getLists(Callback<List<Shoppinglist>> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<List<Shoppinglist>>() {
+            public List<Shoppinglist> call() {
+                return mListManager.getLists(user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#addList(Shoppinglist)
+     */
+    public Future<Boolean> addList(final Shoppinglist sl, Callback<Boolean> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return mListManager.addList(sl, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#editList(Shoppinglist)
+     */
+    public Future<Boolean> editList(final Shoppinglist sl, Callback<Boolean> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return mListManager.editList(sl, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#deleteList(Shoppinglist)
+     */
+    public Future<Void> deleteList(final Shoppinglist sl, Callback<Void> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Void>() {
+            public Void call() {
+                mListManager.deleteList(sl, user);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#getItem(String)
+     */
+    public Future<ShoppinglistItem> getItem(final String id, Callback<ShoppinglistItem> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<ShoppinglistItem>() {
+            public ShoppinglistItem call() {
+                return mListManager.getItem(id, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#getItems(String)
+     */
+    public Future<List<ShoppinglistItem>> getItems(final String shoppinglistId, Callback<List<ShoppinglistItem>> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<List<ShoppinglistItem>>() {
+            public List<ShoppinglistItem> call() {
+                return mListManager.getItems(shoppinglistId, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#getItems(Shoppinglist)
+     */
+    public Future<List<ShoppinglistItem>> getItems(Shoppinglist sl, Callback<List<ShoppinglistItem>> callback) {
+        return getItems(sl.getId(), callback);
+    }
+
+    /**
+     * @see ListManager#addItem(ShoppinglistItem)
+     */
+    public Future<Boolean> addItem(final ShoppinglistItem sli, Callback<Boolean> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return mListManager.addItem(sli, true, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#addItem(ShoppinglistItem, boolean, User)
+     */
+    public Future<Boolean> addItem(final ShoppinglistItem sli, final boolean incrementCount, final User user, Callback<Boolean> callback) {
+        return submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return mListManager.addItem(sli, incrementCount, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#editItem(ShoppinglistItem)
+     */
+    public Future<Boolean> editItem(final ShoppinglistItem sli, Callback<Boolean> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return mListManager.editItem(sli, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#editItems(List)
+     */
+    public Future<Boolean> editItems(final List<ShoppinglistItem> items, Callback<Boolean> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return mListManager.editItems(items, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#deleteItem(ShoppinglistItem)
+     */
+    public Future<Boolean> deleteItem(final ShoppinglistItem sli, Callback<Boolean> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return mListManager.deleteItem(sli, user);
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#deleteItemsTicked(Shoppinglist)
+     */
+    public Future<Void> deleteItemsTicked(final Shoppinglist sl, Callback<Void> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Void>() {
+            public Void call() {
+                mListManager.deleteItems(sl, true, user);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#deleteItemsUnticked(Shoppinglist)
+     */
+    public Future<Void> deleteItemsUnticked(final Shoppinglist sl, Callback<Void> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Void>() {
+            public Void call() {
+                mListManager.deleteItems(sl, false, user);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * @see ListManager#deleteItemsAll(Shoppinglist)
+     */
+    public Future<Void> deleteItemsAll(final Shoppinglist sl, Callback<Void> callback) {
+        final User user = mListManager.user();
+        return submit(new Callable<Void>() {
+            public Void call() {
+                mListManager.deleteItems(sl, null, user);
+                return null;
+            }
+        }, callback);
+    }
+
+    private <T> Future<T> submit(final Callable<T> task, final Callback<T> callback) {
+        return mExecutor.submit(new Callable<T>() {
+            public T call() throws Exception {
+                T result;
+                try {
+                    result = task.call();
+                } catch (Exception e) {
+                    SgnLog.e(TAG, e.getMessage(), e);
+                    deliver(callback, null, e);
+                    throw e;
+                }
+                deliver(callback, result, null);
+                return result;
+            }
+        });
+    }
+
+    private <T> void deliver(final Callback<T> callback, final T result, final Exception error) {
+        if (callback == null) {
+            return;
+        }
+        mHandler.post(new Runnable() {
+            public void run() {
+                callback.onComplete(result, error);
+            }
+        });
+    }
+
+}
@@ -17,6 +17,7 @@
 package com.shopgun.android.sdk.shoppinglists;
 
 import android.annotation.SuppressLint;
+import android.os.Looper;
 
 import com.shopgun.android.sdk.Constants;
 import com.shopgun.android.sdk.ShopGun;
@@ -60,6 +61,8 @@ public class ListManager {
      * list and item notifications, to avoid multiple updates for a single operation */
     private ShoppinglistEvent.Builder mBuilder = new ShoppinglistEvent.Builder(false);
 
+    private final AsyncListManager mAsync;
+
     /**
      * Default constructor for ListManager.
      * @param shopGun The {@link ShopGun} instance to use
@@ -68,6 +71,16 @@ public class ListManager {
     public ListManager(ShopGun shopGun, DatabaseWrapper db) {
         mShopGun = shopGun;
         mDatabase = db;
+        mAsync = new AsyncListManager(this, shopGun.getHandler());
+    }
+
+    /**
+     * Get the asynchronous variant of this {@link ListManager}, that performs all database I/O
+     * on a single database thread. Use it from the main thread.
+     * @return An {@link AsyncListManager}
+     */
+    public AsyncListManager async() {
+        return mAsync;
     }
 
     /**
@@ -76,7 +89,11 @@ public class ListManager {
      * @return A shopping list, or {@code null}
      */
     public Shoppinglist getList(String id) {
-        return mDatabase.getList(id, user());
+        return getList(id, user());
+    }
+
+    Shoppinglist getList(String id, User user) {
+        return mDatabase.getList(id, user);
     }
 
     /**
@@ -85,7 +102,11 @@ public class ListManager {
      * @return A {@link List} of {@link Shoppinglist}, for current {@link User}
      */
     public List<Shoppinglist> getLists() {
-        return mDatabase.getLists(user());
+        return getLists(user());
+    }
+
+    List<Shoppinglist> getLists(User user) {
+        return mDatabase.getLists(user);
     }
 
     /**
@@ -108,15 +129,17 @@ public class ListManager {
      * @param sl A shoppinglist to add to the database
      * @return {@code true} if the action was performed, else {@code false}
      */
-    public boolean addList(final Shoppinglist sl) {
+    public synchronized boolean addList(final Shoppinglist sl) {
+        return addList(sl, user());
+    }
+
+    synchronized boolean addList(final Shoppinglist sl, final User user) {
 
         List<Shoppinglist> lists = new ArrayList<Shoppinglist>();
         lists.add(sl);
 
         sl.setModified(new Date());
 
-        final User user = user();
-
         Share owner = sl.getOwner();
         if (owner == null || owner.getEmail() == null) {
             owner = new Share(user.getEmail(), Share.ACCESS_OWNER, null);
@@ -154,11 +177,11 @@ public class ListManager {
      * @param sl A shoppinglist that have been edited
      * @return {@code true} if the action was performed, else {@code false}
      */
-    public boolean editList(Shoppinglist sl) {
+    public synchronized boolean editList(Shoppinglist sl) {
         return editList(sl, user());
     }
 
-    private boolean editList(Shoppinglist sl, User user) {
+    synchronized boolean editList(Shoppinglist sl, User user) {
 
         Shoppinglist original = mDatabase.getList(sl.getId(), user);
         // Check for changes in previous item, and update surrounding
@@ -285,13 +308,13 @@ public class ListManager {
      * {@link Shoppinglist shoppinglist} are also deleted.</p>
      * @param sl A shoppinglist to delete
      */
-    public void deleteList(Shoppinglist sl) {
-        User u = user();
-        mDatabase.allowEditOrThrow(sl, u);
-        deleteList(sl, u);
+    public synchronized void deleteList(Shoppinglist sl) {
+        deleteList(sl, user());
     }
 
-    private boolean deleteList(Shoppinglist sl, User user) {
+    synchronized boolean deleteList(Shoppinglist sl, User user) {
+
+        mDatabase.allowEditOrThrow(sl, user);
 
         List<Shoppinglist> editedLists = new ArrayList<Shoppinglist>();
         Date now = new Date();
@@ -340,7 +363,11 @@ public class ListManager {
      * @return A shopping list item, or {@code null}
      */
     public ShoppinglistItem getItem(String id) {
-        return mDatabase.getItem(id, user());
+        return getItem(id, user());
+    }
+
+    ShoppinglistItem getItem(String id, User user) {
+        return mDatabase.getItem(id, user);
     }
 
     /**
@@ -367,7 +394,7 @@ public class ListManager {
         return getItems(sl.getId(), user);
     }
 
-    private List<ShoppinglistItem> getItems(String shoppinglistId, User user) {
+    List<ShoppinglistItem> getItems(String shoppinglistId, User user) {
         List<ShoppinglistItem> items = mDatabase.getItems(shoppinglistId, user, false);
         ListUtils.sortItems(items);
         return items;
@@ -381,7 +408,7 @@ public class ListManager {
      * @param sli A {@link ShoppinglistItem} to add to a {@link Shoppinglist}
      * @return {@code true} if the action was performed, else {@code false}
      */
-    public boolean addItem(ShoppinglistItem sli) {
+    public synchronized boolean addItem(ShoppinglistItem sli) {
         return addItem(sli, true, user());
     }
 
@@ -401,7 +428,7 @@ public class ListManager {
      * @return {@code true} if the action was performed, else {@code false}
      */
     @SuppressLint("DefaultLocale")
-    public boolean addItem(ShoppinglistItem sli, boolean incrementCount, User user) {
+    public synchronized boolean addItem(ShoppinglistItem sli, boolean incrementCount, User user) {
 
         mDatabase.allowEditOrThrow(sli.getShoppinglistId(), user);
 
@@ -421,7 +448,7 @@ public class ListManager {
                 if (idEqual && descriptionEqual) {
                     s.setCount(s.getCount() + 1);
                     s.setTick(false);
-                    return editItem(s);
+                    return editItem(s, user);
                 }
             }
 
@@ -482,7 +509,7 @@ public class ListManager {
      * @param sli An edited {@link ShoppinglistItem}
      * @return {@code true} if the action was performed, else {@code false}
      */
-    public boolean editItem(ShoppinglistItem sli) {
+    public synchronized boolean editItem(ShoppinglistItem sli) {
         try {
             return editItem(sli, user());
         } finally {
@@ -495,7 +522,7 @@ public class ListManager {
      * @param items A list of ShoppinglistItem to edit
      * @return true if the ShoppinglistItems was edited successful
      */
-    public boolean editItems(List<ShoppinglistItem> items) {
+    public synchronized boolean editItems(List<ShoppinglistItem> items) {
         long s = System.currentTimeMillis();
         try {
             return editItems(items, user());
@@ -504,7 +531,7 @@ public class ListManager {
         }
     }
 
-    private boolean editItems(List<ShoppinglistItem> items, User user) {
+    synchronized boolean editItems(List<ShoppinglistItem> items, User user) {
 
         // Validate and get response in one step
         List<Shoppinglist> lists = mDatabase.allowEditItemsOrThrow(items, user);
@@ -550,7 +577,7 @@ public class ListManager {
         return success;
     }
 
-    private boolean editItem(ShoppinglistItem sli, User user) {
+    synchronized boolean editItem(ShoppinglistItem sli, User user) {
 
         mDatabase.allowEditOrThrow(sli.getShoppinglistId(), user);
 
@@ -593,7 +620,7 @@ public class ListManager {
      * @param sl A {@link Shoppinglist} to delete the
      * 			{@link ShoppinglistItem ShoppinglistItems} from
      */
-    public void deleteItemsTicked(Shoppinglist sl) {
+    public synchronized void deleteItemsTicked(Shoppinglist sl) {
         deleteItems(sl, true, user());
     }
 
@@ -605,7 +632,7 @@ public class ListManager {
      * @param sl A {@link Shoppinglist} to delete the
      * 			{@link ShoppinglistItem ShoppinglistItems} from
      */
-    public void deleteItemsUnticked(Shoppinglist sl) {
+    public synchronized void deleteItemsUnticked(Shoppinglist sl) {
         deleteItems(sl, false, user());
     }
 
@@ -616,7 +643,7 @@ public class ListManager {
      * @param sl A {@link Shoppinglist} to delete the
      * 				{@link ShoppinglistItem ShoppinglistItems} from
      */
-    public void deleteItemsAll(Shoppinglist sl) {
+    public synchronized void deleteItemsAll(Shoppinglist sl) {
         deleteItems(sl, null, user());
     }
 
@@ -637,7 +664,7 @@ public class ListManager {
      * @param stateToDelete A state that describes what to delete
      * @param user the user that owns the {@link ShoppinglistItem ShoppinglistItems}
      */
-    private boolean deleteItems(final Shoppinglist sl, Boolean stateToDelete, User user) {
+    synchronized boolean deleteItems(final Shoppinglist sl, Boolean stateToDelete, User user) {
 
         mDatabase.allowEditOrThrow(sl.getId(), user);
 
@@ -702,13 +729,13 @@ public class ListManager {
      * @param sli A {@link ShoppinglistItem} to delete
      * @return {@code true} if the action was performed, else {@code false}
      */
-    public boolean deleteItem(ShoppinglistItem sli) {
-        User u = user();
-        mDatabase.allowEditOrThrow(sli.getShoppinglistId(), u);
-        return deleteItem(sli, u);
+    public synchronized boolean deleteItem(ShoppinglistItem sli) {
+        return deleteItem(sli, user());
     }
 
-    private boolean deleteItem(ShoppinglistItem sli, User user) {
+    synchronized boolean deleteItem(ShoppinglistItem sli, User user) {
+
+        mDatabase.allowEditOrThrow(sli.getShoppinglistId(), user);
 
         Date now = new Date();
 
@@ -742,7 +769,7 @@ public class ListManager {
 			 * state but won't have to sync changes to API.
 			 * API will change state based on the synced item.
 			 */
-            Shoppinglist sl = getList(sli.getShoppinglistId());
+            Shoppinglist sl = getList(sli.getShoppinglistId(), user);
             sl.setModified(now);
             mDatabase.editList(sl, user);
             mBuilder.edit(sl);
@@ -757,14 +784,14 @@ public class ListManager {
      * <p>wrapper method for: ShopGun.getInstance().getUser()</p>
      * @return A {@link User}
      */
-    private User user() {
+    User user() {
         return mShopGun.getUser();
     }
 
     /**
      * Deletes all rows in the {@link DatabaseWrapper database}.
      */
-    public void clear() {
+    public synchronized void clear() {
         mDatabase.clear();
     }
 
@@ -773,7 +800,7 @@ public class ListManager {
      * given{@link User}.
      * @param userId A {@link User#getUserId()} to clear
      */
-    public void clear(int userId) {
+    public synchronized void clear(int userId) {
         mDatabase.clear(userId);
     }
 
@@ -795,8 +822,19 @@ public class ListManager {
 
     private void postShoppinglistEvent() {
         if (!mShopGun.getSyncManager().isPaused() && mBuilder.hasChanges()) {
-            SgnBus.getInstance().post(mBuilder.build());
+            final ShoppinglistEvent e = mBuilder.build();
             mBuilder = new ShoppinglistEvent.Builder(false);
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                SgnBus.getInstance().post(e);
+            } else {
+                // Subscribers expect the event on the main thread, e.g. when changes are made by AsyncListManager
+                mShopGun.getHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        SgnBus.getInstance().post(e);
+                    }
+                });
+            }
         }
     }
 
@@ -388,6 +388,8 @@ public class SyncManager {
         r.setDelivery(mDelivery);
 
         r.setTag(mRequestTag);
+        // Don't let a sync burst delay the requests the user is waiting for
+        r.setTrafficClass(Request.TrafficClass.SYNC);
         mShopGun.add(r);
 
 //		if (!isPullReq(r) && r.getMethod() != Request.Method.GET) {
@@ -16,12 +16,32 @@
 
 package com.shopgun.android.sdk.test;
 
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
 import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.database.DatabaseHelper;
+import com.shopgun.android.sdk.database.DbUtils;
+import com.shopgun.android.sdk.database.ItemSQLiteHelper;
+import com.shopgun.android.sdk.database.ListSQLiteHelper;
+import com.shopgun.android.sdk.database.ShareSQLiteHelper;
+
+import junit.framework.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class DatabaseTest {
 
     public static final String TAG = Constants.getTag(DatabaseTest.class);
 
+    private static final String ID = DatabaseHelper.ID;
+    private static final String USER = DatabaseHelper.USER;
+    private static final String STATE = DatabaseHelper.STATE;
+    private static final String SHOPPINGLIST_ID = DatabaseHelper.SHOPPINGLIST_ID;
+    private static final String PREVIOUS_ID = DatabaseHelper.PREVIOUS_ID;
+
     private DatabaseTest() {
         // empty
     }
@@ -30,6 +50,11 @@ public class DatabaseTest {
 
         SdkTest.start(TAG);
         testDBTest();
+        testItemQueryPlans();
+        testListQueryPlans();
+        testShareQueryPlans();
+        testRebuildTable();
+
     }
 
     public static void testDBTest() {
@@ -37,4 +62,147 @@ public class DatabaseTest {
         }).getName());
     }
 
+    public static void testItemQueryPlans() {
+
+        SQLiteDatabase db = createDatabase();
+        try {
+            String t = ItemSQLiteHelper.TABLE;
+            // getItems
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=? AND " + STATE + "!=?");
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=?");
+            // getItemPrevious
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + SHOPPINGLIST_ID + "=? AND " + PREVIOUS_ID + "=? AND " + USER + "=?");
+            // getItem
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + ID + "=? AND " + USER + "=? AND " + STATE + "!=?");
+            // editItemState, deleteItems
+            assertIndexed(db, "UPDATE " + t + " SET " + STATE + "=? WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=?");
+            assertIndexed(db, "DELETE FROM " + t + " WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=? AND " + DatabaseHelper.TICK + "=?");
+            // clean
+            assertIndexed(db, "DELETE FROM " + t + " WHERE " + USER + "=? AND " + STATE + "=?");
+        } finally {
+            db.close();
+        }
+
+        SdkTest.logTest(TAG, "ItemQueryPlans");
+
+    }
+
+    public static void testListQueryPlans() {
+
+        SQLiteDatabase db = createDatabase();
+        try {
+            String t = ListSQLiteHelper.TABLE;
+            String order = " ORDER BY " + DatabaseHelper.NAME;
+            // getLists
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + USER + "=? AND " + STATE + "!=?" + order);
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + USER + "=?" + order);
+            // getList
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + ID + "=? AND " + USER + "=? AND " + STATE + "!=?" + order);
+            // getListPrevious
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + PREVIOUS_ID + "=? AND " + USER + "=?" + order);
+            // clean
+            assertIndexed(db, "DELETE FROM " + t + " WHERE " + USER + "=? AND " + STATE + "=?");
+        } finally {
+            db.close();
+        }
+
+        SdkTest.logTest(TAG, "ListQueryPlans");
+
+    }
+
+    public static void testShareQueryPlans() {
+
+        SQLiteDatabase db = createDatabase();
+        try {
+            String t = ShareSQLiteHelper.TABLE;
+            // getShares
+            assertIndexed(db, "SELECT * FROM " + t + " WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=? AND " + STATE + "!=?");
+            // deleteShares
+            assertIndexed(db, "DELETE FROM " + t + " WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=?");
+            // deleteShare
+            assertIndexed(db, "DELETE FROM " + t + " WHERE " + DatabaseHelper.EMAIL + "=? AND " + SHOPPINGLIST_ID + "=? AND " + USER + "=?");
+        } finally {
+            db.close();
+        }
+
+        SdkTest.logTest(TAG, "ShareQueryPlans");
+
+    }
+
+    public static void testRebuildTable() {
+
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            String t = ShareSQLiteHelper.TABLE;
+            // A schema without the state and accept_url columns
+            db.execSQL("create table " + t + "(id integer primary key, shopping_list_id text, user integer, email text)");
+            int rows = (DbUtils.COPY_BATCH_SIZE * 2) + 10;
+            int invalid = 0;
+            for (int i = 0; i < rows; i++) {
+                // every tenth row violates the 'not null' of the current schema
+                String listId = null;
+                if (i % 10 == 0) {
+                    invalid++;
+                } else {
+                    listId = "list-" + i;
+                }
+                db.execSQL("insert into " + t + "(shopping_list_id, user, email) values (?, ?, ?)",
+                        new Object[]{listId, i, "user" + i + "@example.com"});
+            }
+
+            int copied = DbUtils.rebuildTable(db, t, ShareSQLiteHelper.CREATE_TABLE);
+            Assert.assertEquals(rows - invalid, copied);
+            Assert.assertEquals(copied, DatabaseUtils.queryNumEntries(db, t));
+            Assert.assertTrue(DbUtils.getColumns(db, t).contains(DatabaseHelper.ACCEPT_URL));
+            Assert.assertFalse(DbUtils.hasTable(db, t + "_old"));
+
+            // indexes are dropped along with the old table
+            ShareSQLiteHelper.create(db);
+            assertIndexed(db, "DELETE FROM " + t + " WHERE " + SHOPPINGLIST_ID + "=? AND " + USER + "=?");
+        } finally {
+            db.close();
+        }
+
+        SdkTest.logTest(TAG, "RebuildTable");
+
+    }
+
+    private static SQLiteDatabase createDatabase() {
+        // The plan only depends on the schema, so an in-memory database will do
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        ListSQLiteHelper.create(db);
+        ItemSQLiteHelper.create(db);
+        ShareSQLiteHelper.create(db);
+        return db;
+    }
+
+    /**
+     * Assert that a query neither scans a whole table, nor sorts the result in a temporary b-tree.
+     * Scans of an index are allowed, e.g. "SCAN TABLE x USING INDEX y".
+     */
+    private static void assertIndexed(SQLiteDatabase db, String sql) {
+        List<String> plan = explainQueryPlan(db, sql);
+        Assert.assertFalse("Empty query plan: " + sql, plan.isEmpty());
+        for (String detail : plan) {
+            boolean scan = detail.startsWith("SCAN") && !detail.contains(" USING ");
+            boolean sort = detail.contains("TEMP B-TREE");
+            Assert.assertFalse("'" + detail + "' in query plan: " + sql, scan || sort);
+        }
+    }
+
+    private static List<String> explainQueryPlan(SQLiteDatabase db, String sql) {
+        // The arguments are bound as null, which doesn't affect the plan
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            List<String> plan = new ArrayList<String>();
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) {
+                plan.add(c.getString(detail));
+            }
+            return plan;
+        } finally {
+            c.close();
+        }
+    }
+
 }
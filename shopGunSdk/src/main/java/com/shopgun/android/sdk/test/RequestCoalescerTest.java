@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.test;
+
+import com.shopgun.android.sdk.Constants;
+import com.shopgun.android.sdk.network.Request;
+import com.shopgun.android.sdk.network.RequestCoalescer;
+import com.shopgun.android.sdk.network.impl.JsonObjectRequest;
+
+import junit.framework.Assert;
+
+import java.util.List;
+
+public class RequestCoalescerTest {
+
+    public static final String TAG = Constants.getTag(RequestCoalescerTest.class);
+
+    private static final String URL = "https://api.etilbudsavis.dk/v2/offers";
+
+    public static void test() {
+
+        SdkTest.start(TAG);
+        testHeadCancelled();
+        testHeadFailed();
+        testHeadCached();
+        testWaiterRemoved();
+
+    }
+
+    public static void testHeadCancelled() {
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Request<?> head = newRequest();
+        Request<?> first = newRequest();
+        Request<?> second = newRequest();
+        Request<?> third = newRequest();
+
+        Assert.assertTrue(coalescer.park(head));
+        Assert.assertFalse(coalescer.park(first));
+        Assert.assertFalse(coalescer.park(second));
+        Assert.assertFalse(coalescer.park(third));
+
+        // Cancelling the head promotes the next request, the others keep waiting
+        head.cancel();
+        List<Request<?>> released = coalescer.release(head);
+        Assert.assertEquals(1, released.size());
+        Assert.assertSame(first, released.get(0));
+
+        // A cancelled waiter is released so it can finish, along with the next head
+        second.cancel();
+        released = coalescer.release(first);
+        Assert.assertEquals(2, released.size());
+        Assert.assertSame(second, released.get(0));
+        Assert.assertSame(third, released.get(1));
+
+        // The cancelled requests can't release anyone
+        Assert.assertTrue(coalescer.release(head).isEmpty());
+        Assert.assertTrue(coalescer.release(second).isEmpty());
+
+        // New requests still wait for the current head
+        Assert.assertFalse(coalescer.park(newRequest()));
+
+        SdkTest.logTest(TAG, "HeadCancelled");
+
+    }
+
+    public static void testHeadFailed() {
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Request<?> head = newRequest();
+        Request<?> first = newRequest();
+        Request<?> second = newRequest();
+
+        Assert.assertTrue(coalescer.park(head));
+        Assert.assertFalse(coalescer.park(first));
+        Assert.assertFalse(coalescer.park(second));
+
+        // A failed head leaves nothing in cache, so only one request goes to the network
+        List<Request<?>> released = coalescer.release(head);
+        Assert.assertEquals(1, released.size());
+        Assert.assertSame(first, released.get(0));
+
+        // A waiting request can't release the others
+        Assert.assertTrue(coalescer.release(second).isEmpty());
+
+        // The new head may be re-added, e.g. after a session error
+        Assert.assertTrue(coalescer.park(first));
+
+        released = coalescer.release(first);
+        Assert.assertEquals(1, released.size());
+        Assert.assertSame(second, released.get(0));
+
+        // The last request leaves the key empty
+        Assert.assertTrue(coalescer.release(second).isEmpty());
+        Assert.assertTrue(coalescer.park(newRequest()));
+
+        SdkTest.logTest(TAG, "HeadFailed");
+
+    }
+
+    public static void testHeadCached() {
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Request<?> head = newRequest();
+        Request<?> first = newRequest();
+        Request<?> second = newRequest();
+
+        Assert.assertTrue(coalescer.park(head));
+        Assert.assertFalse(coalescer.park(first));
+        Assert.assertFalse(coalescer.park(second));
+
+        // Everyone is answered from cache
+        head.setCacheHit(true);
+        List<Request<?>> released = coalescer.release(head);
+        Assert.assertEquals(2, released.size());
+        Assert.assertSame(first, released.get(0));
+        Assert.assertSame(second, released.get(1));
+
+        Assert.assertTrue(coalescer.release(first).isEmpty());
+        Assert.assertTrue(coalescer.park(newRequest()));
+
+        SdkTest.logTest(TAG, "HeadCached");
+
+    }
+
+    public static void testWaiterRemoved() {
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Request<?> head = newRequest();
+        Request<?> first = newRequest();
+        Request<?> second = newRequest();
+
+        Assert.assertTrue(coalescer.park(head));
+        Assert.assertFalse(coalescer.park(first));
+        Assert.assertFalse(coalescer.park(second));
+
+        // The head is in flight, only waiters can be removed
+        Assert.assertFalse(coalescer.remove(head));
+        Assert.assertTrue(coalescer.remove(first));
+        Assert.assertFalse(coalescer.remove(first));
+
+        List<Request<?>> released = coalescer.release(head);
+        Assert.assertEquals(1, released.size());
+        Assert.assertSame(second, released.get(0));
+
+        SdkTest.logTest(TAG, "WaiterRemoved");
+
+    }
+
+    private static Request<?> newRequest() {
+        return new JsonObjectRequest(URL, null);
+    }
+
+}
@@ -43,6 +43,8 @@ public class SdkTest {
         SgnLocationTest.test();
         PageflipUtilsTest.test();
         ListUtilsTest.test();
+        DatabaseTest.test();
+        RequestCoalescerTest.test();
         VersionTest.test();
         ReaderConfigTest.test();
         MaterialColorTest.test();
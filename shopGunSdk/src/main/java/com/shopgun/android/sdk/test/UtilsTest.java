@@ -157,6 +157,20 @@ public class UtilsTest {
         actual = Utils.requestToUrlAndQueryString(r);
         Assert.assertEquals(expected, actual);
 
+        // The key is memoized, and must be rebuilt when the parameters change
+        Assert.assertSame(r.getCacheKey(), r.getCacheKey());
+        r.getParameters().put("c", "yellow blue");
+        expected = "http://eta.dk/?a=red&b=blue&c=yellow+blue&d=green";
+        Assert.assertEquals(expected, r.getCacheKey());
+
+        r.getParameters().remove("b");
+        expected = "http://eta.dk/?a=red&c=yellow+blue&d=green";
+        Assert.assertEquals(expected, r.getCacheKey());
+
+        r.setUrl("http://eta.dk/v2/");
+        expected = "http://eta.dk/v2/?a=red&c=yellow+blue&d=green";
+        Assert.assertEquals(expected, r.getCacheKey());
+
         SdkTest.logTest(TAG, "RequestToUrlAndQueryString");
     }
 
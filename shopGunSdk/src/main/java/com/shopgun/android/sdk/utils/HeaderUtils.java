@@ -16,6 +16,8 @@
 
 package com.shopgun.android.sdk.utils;
 
+import java.util.Map;
+
 /**
  * Helper class for headers the ShopGun API uses
  */
@@ -39,6 +41,59 @@ public class HeaderUtils {
     /** Header name for cash control */
     public static final String CACHE_CONTROL = "Cache-Control";
 
+    /** Header name for the entity tag of a response */
+    public static final String ETAG = "ETag";
+
+    /** Header name for the last modified date of a response */
+    public static final String LAST_MODIFIED = "Last-Modified";
+
+    /** Header name for a conditional request, based on {@link #ETAG} */
+    public static final String IF_NONE_MATCH = "If-None-Match";
+
+    /** Header name for a conditional request, based on {@link #LAST_MODIFIED} */
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /**
+     * Get the value of a header, ignoring the case of the header name.
+     * @param headers A map of headers, may be {@code null}
+     * @param name The header name
+     * @return The value, or {@code null} if the header doesn't exist
+     */
+    public static String getHeader(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            if (name.equalsIgnoreCase(e.getKey())) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the delay requested by a {@link #RETRY_AFTER} header. Only the delay-seconds form
+     * of the header is supported, an HTTP date is ignored.
+     * @param headers A map of headers, may be {@code null}
+     * @return The delay in milliseconds, or -1 if the header doesn't exist, or isn't a number of seconds
+     */
+    public static long getRetryAfter(Map<String, String> headers) {
+        String value = getHeader(headers, RETRY_AFTER);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds < 0 ? -1 : seconds * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     class Values {
         public static final String NO_CACHE = "no-cache";
         public static final String NO_STORE = "no-store";
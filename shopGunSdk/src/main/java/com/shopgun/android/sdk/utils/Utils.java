@@ -87,13 +87,7 @@ public final class Utils {
      * @return A String
      */
     public static String requestToUrlAndQueryString(Request<?> r) {
-        if (r == null || r.getUrl() == null) {
-            return null;
-        }
-        if (r.getParameters() == null || r.getParameters().isEmpty()) {
-            return r.getUrl();
-        }
-        return r.getUrl() + "?" + mapToQueryString(r.getParameters(), r.getParamsEncoding());
+        return r == null ? null : r.getCacheKey();
     }
 
     /**
@@ -115,7 +109,9 @@ public final class Utils {
             if (sb.length() > 0) {
                 sb.append("&");
             }
-            sb.append(encode(key, encoding)).append("=").append(encode(value, encoding));
+            appendEncoded(sb, key, encoding);
+            sb.append("=");
+            appendEncoded(sb, value, encoding);
 
         }
         return sb.toString();
@@ -179,6 +175,58 @@ public final class Utils {
         return value;
     }
 
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * URL encode a string, directly into a {@link StringBuilder}. The output is the same as
+     * {@link #encode(String, String)}, but UTF-8 is encoded without intermediate allocations.
+     *
+     * @param sb       to append to
+     * @param value    to encode
+     * @param encoding encoding to use
+     */
+    public static void appendEncoded(StringBuilder sb, String value, String encoding) {
+
+        if (encoding == null || !"utf-8".equalsIgnoreCase(encoding)) {
+            sb.append(encode(value, encoding));
+            return;
+        }
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                    c == '.' || c == '-' || c == '*' || c == '_') {
+                sb.append(c);
+            } else if (c == ' ') {
+                sb.append('+');
+            } else if (c < 0x80) {
+                appendHex(sb, c);
+            } else if (c < 0x800) {
+                appendHex(sb, 0xC0 | (c >> 6));
+                appendHex(sb, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                appendHex(sb, 0xF0 | (cp >> 18));
+                appendHex(sb, 0x80 | ((cp >> 12) & 0x3F));
+                appendHex(sb, 0x80 | ((cp >> 6) & 0x3F));
+                appendHex(sb, 0x80 | (cp & 0x3F));
+            } else if (c >= '\uD800' && c <= '\uDFFF') {
+                // Unpaired surrogate, encoded as '?' like URLEncoder
+                appendHex(sb, '?');
+            } else {
+                appendHex(sb, 0xE0 | (c >> 12));
+                appendHex(sb, 0x80 | ((c >> 6) & 0x3F));
+                appendHex(sb, 0x80 | (c & 0x3F));
+            }
+        }
+
+    }
+
+    private static void appendHex(StringBuilder sb, int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
     /**
      * Convert an API date of the format "2013-03-03T13:37:00+0000" into a Date object.
      *
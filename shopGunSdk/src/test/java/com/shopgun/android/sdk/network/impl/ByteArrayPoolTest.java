@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2015 ShopGun
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+
+package com.shopgun.android.sdk.network.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ByteArrayPoolTest {
+
+    @Test
+    public void testBucketSizes() throws Exception {
+        ByteArrayPool pool = new ByteArrayPool();
+        assertEquals(4096, pool.getBuf(1).length);
+        assertEquals(4096, pool.getBuf(4096).length);
+        assertEquals(8192, pool.getBuf(4097).length);
+        assertEquals(512 * 1024, pool.getBuf(300 * 1024).length);
+        // Too large to be pooled
+        assertEquals(2 * 1024 * 1024, pool.getBuf(2 * 1024 * 1024).length);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        ByteArrayPool pool = new ByteArrayPool();
+        byte[] buf = pool.getBuf(5000);
+        pool.returnBuf(buf);
+        assertEquals(8192, pool.getRetainedBytes());
+        assertSame(buf, pool.getBuf(6000));
+        assertEquals(0, pool.getRetainedBytes());
+        assertEquals(2, pool.getRequestCount());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(0.5f, pool.getHitRate(), 0.0001f);
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+        ByteArrayPool pool = new ByteArrayPool(8192);
+        byte[] first = pool.getBuf(4096);
+        byte[] second = pool.getBuf(4096);
+        byte[] third = pool.getBuf(4096);
+        pool.returnBuf(first);
+        pool.returnBuf(second);
+        pool.returnBuf(third);
+        // The least recently returned buffer is discarded
+        assertEquals(8192, pool.getRetainedBytes());
+        byte[] a = pool.getBuf(4096);
+        byte[] b = pool.getBuf(4096);
+        assertTrue(a != first && b != first);
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testOutputStream() throws Exception {
+        ByteArrayPool pool = new ByteArrayPool();
+        PoolingByteArrayOutputStream os = new PoolingByteArrayOutputStream(pool, 10);
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        os.write(data, 0, data.length);
+        byte[] result = os.toByteArray();
+        os.close();
+        assertEquals(data.length, result.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], result[i]);
+        }
+        assertTrue(pool.getRetainedBytes() > 0);
+    }
+
+}